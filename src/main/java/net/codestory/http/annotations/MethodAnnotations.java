@@ -18,33 +18,45 @@ package net.codestory.http.annotations;
 import net.codestory.http.Context;
 import net.codestory.http.payload.Payload;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+// Immutable, composed once per route: each operation wraps the ones added before it.
 public class MethodAnnotations {
-  private final List<BiFunction<Context, Function<Context, Payload>, Payload>> operations;
+  private static final MethodAnnotations NONE = new MethodAnnotations(null);
 
-  MethodAnnotations() {
-    this.operations = new ArrayList<>();
-  }
+  private final BiFunction<Context, Function<Context, Payload>, Payload> pipeline;
 
-  void addAroundOperation(BiFunction<Context, Function<Context, Payload>, Payload> operation) {
-    operations.add(operation);
+  private MethodAnnotations(BiFunction<Context, Function<Context, Payload>, Payload> pipeline) {
+    this.pipeline = pipeline;
   }
 
-  void addAfterOperation(BiFunction<Context, Payload, Payload> operation) {
-    operations.add((context, payloadSupplier) -> operation.apply(context, payloadSupplier.apply(context)));
+  static MethodAnnotations none() {
+    return NONE;
   }
 
-  public Payload apply(Context context, Function<Context, Payload> payloadSupplier) {
-    Function<Context, Payload> current = payloadSupplier;
+  MethodAnnotations withAroundOperation(BiFunction<Context, Function<Context, Payload>, Payload> operation) {
+    BiFunction<Context, Function<Context, Payload>, Payload> inner = pipeline;
+    if (inner == null) {
+      return new MethodAnnotations(operation);
+    }
+
+    return new MethodAnnotations((context, payloadSupplier) -> operation.apply(context, ctx -> inner.apply(ctx, payloadSupplier)));
+  }
 
-    for (BiFunction<Context, Function<Context, Payload>, Payload> operation : operations) {
-      current = ctx -> operation.apply(ctx, payloadSupplier);
+  MethodAnnotations withAfterOperation(BiFunction<Context, Payload, Payload> operation) {
+    BiFunction<Context, Function<Context, Payload>, Payload> inner = pipeline;
+    if (inner == null) {
+      return new MethodAnnotations((context, payloadSupplier) -> operation.apply(context, payloadSupplier.apply(context)));
     }
 
-    return current.apply(context);
+    return new MethodAnnotations((context, payloadSupplier) -> operation.apply(context, inner.apply(context, payloadSupplier)));
+  }
+
+  public Payload apply(Context context, Function<Context, Payload> payloadSupplier) {
+    if (pipeline == null) {
+      return payloadSupplier.apply(context);
+    }
+    return pipeline.apply(context, payloadSupplier);
   }
 }
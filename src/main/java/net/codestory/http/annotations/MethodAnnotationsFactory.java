@@ -39,26 +39,32 @@ public class MethodAnnotationsFactory {
   }
 
   public MethodAnnotations forMethod(Method method) {
-    MethodAnnotations methodAnnotations = new MethodAnnotations();
-    aroundAnnotations.forEach((annotationType, apply) -> addAroundOperationIfNecessary(annotationType, apply, method, methodAnnotations));
-    afterAnnotations.forEach((annotationType, apply) -> addAfterOperationIfNecessary(annotationType, apply, method, methodAnnotations));
+    MethodAnnotations methodAnnotations = MethodAnnotations.none();
+    for (Map.Entry<Class<? extends Annotation>, Supplier<? extends ApplyAroundAnnotation<? extends Annotation>>> entry : aroundAnnotations.entrySet()) {
+      methodAnnotations = withAroundOperationIfNecessary(entry.getKey(), entry.getValue(), method, methodAnnotations);
+    }
+    for (Map.Entry<Class<? extends Annotation>, Supplier<? extends ApplyAfterAnnotation<? extends Annotation>>> entry : afterAnnotations.entrySet()) {
+      methodAnnotations = withAfterOperationIfNecessary(entry.getKey(), entry.getValue(), method, methodAnnotations);
+    }
     return methodAnnotations;
   }
 
   @SuppressWarnings("unchecked")
-  private <T extends Annotation> void addAroundOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAroundAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
+  private <T extends Annotation> MethodAnnotations withAroundOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAroundAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
     T annotation = findAnnotationOnMethodOrClass(annotationType, method);
-    if (annotation != null) {
-      methodAnnotations.addAroundOperation((context, payloadSupplier) -> ((ApplyAroundAnnotation<T>) apply.get()).apply(annotation, context, payloadSupplier));
+    if (annotation == null) {
+      return methodAnnotations;
     }
+    return methodAnnotations.withAroundOperation((context, payloadSupplier) -> ((ApplyAroundAnnotation<T>) apply.get()).apply(annotation, context, payloadSupplier));
   }
 
   @SuppressWarnings("unchecked")
-  private <T extends Annotation> void addAfterOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAfterAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
+  private <T extends Annotation> MethodAnnotations withAfterOperationIfNecessary(Class<T> annotationType, Supplier<? extends ApplyAfterAnnotation<? extends Annotation>> apply, Method method, MethodAnnotations methodAnnotations) {
     T annotation = findAnnotationOnMethodOrClass(annotationType, method);
-    if (annotation != null) {
-      methodAnnotations.addAfterOperation((context, payload) -> ((ApplyAfterAnnotation<T>) apply.get()).apply(annotation, context, payload));
+    if (annotation == null) {
+      return methodAnnotations;
     }
+    return methodAnnotations.withAfterOperation((context, payload) -> ((ApplyAfterAnnotation<T>) apply.get()).apply(annotation, context, payload));
   }
 
   private <T extends Annotation> T findAnnotationOnMethodOrClass(Class<T> annotationType, Method method) {
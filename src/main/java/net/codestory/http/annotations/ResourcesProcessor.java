@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.annotations;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Runs at compile time to list the @Resource classes. It writes an index used
+// by RouteCollection.autoDiscover() in production mode instead of scanning the
+// classpath. A partial build only compiles some classes, so the index it left
+// is updated rather than replaced: recompiled classes are listed again only if
+// they still are resources.
+//
+// With -Afluenthttp.generateConfiguration=true, it also writes a Configuration
+// per package that adds its resources.
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ResourcesProcessor.GENERATE_CONFIGURATION)
+public class ResourcesProcessor extends AbstractProcessor {
+  public static final String INDEX = "META-INF/fluent-http/resources";
+  public static final String CONFIGURATION = "GeneratedRoutesConfiguration";
+  public static final String GENERATE_CONFIGURATION = "fluenthttp.generateConfiguration";
+
+  private final Set<String> indexedTypes = new TreeSet<>();
+  private final Set<String> compiledTypes = new TreeSet<>();
+  private final Set<String> generatedPackages = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getRootElements()) {
+      if (element instanceof TypeElement) {
+        compiledTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+      }
+    }
+
+    Map<String, Set<String>> typesPerPackage = new TreeMap<>();
+    for (Element element : roundEnv.getElementsAnnotatedWith(Resource.class)) {
+      if ((element.getKind() == ElementKind.CLASS) && isVisible((TypeElement) element)) {
+        TypeElement type = (TypeElement) element;
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+
+        indexedTypes.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        typesPerPackage.computeIfAbsent(packageName, key -> new TreeSet<>()).add(type.getQualifiedName().toString());
+      }
+    }
+
+    try {
+      if (Boolean.parseBoolean(processingEnv.getOptions().get(GENERATE_CONFIGURATION))) {
+        for (Map.Entry<String, Set<String>> entry : typesPerPackage.entrySet()) {
+          if (generatedPackages.add(entry.getKey())) {
+            writeConfiguration(entry.getKey(), entry.getValue());
+          } else {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Resources generated in a later round are not added to " + entry.getKey() + "." + CONFIGURATION);
+          }
+        }
+      }
+
+      if (roundEnv.processingOver() && !compiledTypes.isEmpty()) {
+        writeIndex();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to generate routes: " + e.getMessage());
+    }
+
+    return false;
+  }
+
+  // Top level or nested static classes that the generated configuration can reference
+  private static boolean isVisible(TypeElement type) {
+    Element enclosing = type.getEnclosingElement();
+    if (enclosing instanceof PackageElement) {
+      return !type.getModifiers().contains(Modifier.PRIVATE);
+    }
+    return type.getModifiers().contains(Modifier.STATIC) && !type.getModifiers().contains(Modifier.PRIVATE) && (enclosing instanceof TypeElement) && isVisible((TypeElement) enclosing);
+  }
+
+  private void writeIndex() throws IOException {
+    Set<String> types = new TreeSet<>(indexedTypes);
+    for (String type : previousIndex()) {
+      int nested = type.indexOf('$');
+      if (!compiledTypes.contains((nested == -1) ? type : type.substring(0, nested))) {
+        types.add(type);
+      }
+    }
+
+    FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+    try (Writer writer = index.openWriter()) {
+      for (String type : types) {
+        writer.write(type);
+        writer.write('\n');
+      }
+    }
+  }
+
+  private Set<String> previousIndex() {
+    Set<String> types = new TreeSet<>();
+    try {
+      FileObject index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+      try (BufferedReader reader = new BufferedReader(index.openReader(true))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (!line.isEmpty() && !line.startsWith("#")) {
+            types.add(line);
+          }
+        }
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      // No previous build
+    }
+    return types;
+  }
+
+  private void writeConfiguration(String packageName, Set<String> types) throws IOException {
+    String className = packageName.isEmpty() ? CONFIGURATION : packageName + "." + CONFIGURATION;
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("public final class ").append(CONFIGURATION).append(" implements net.codestory.http.Configuration {\n");
+    source.append("  @Override\n");
+    source.append("  public void configure(net.codestory.http.routes.Routes routes) {\n");
+    for (String type : types) {
+      source.append("    routes.add(").append(type).append(".class);\n");
+    }
+    source.append("  }\n");
+    source.append("}\n");
+
+    try (Writer writer = processingEnv.getFiler().createSourceFile(className).openWriter()) {
+      writer.write(source.toString());
+    }
+  }
+}
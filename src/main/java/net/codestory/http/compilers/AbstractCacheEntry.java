@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import net.codestory.http.misc.*;
+
+// Entries are served many times, their ETag is computed only once
+abstract class AbstractCacheEntry implements CacheEntry {
+  private static final long serialVersionUID = 1L;
+
+  private transient volatile String etag;
+
+  @Override
+  public String etag() {
+    String memoized = etag;
+    if (memoized == null) {
+      memoized = etag = computeEtag();
+    }
+    return memoized;
+  }
+
+  protected String computeEtag() {
+    return Md5.of(toBytes());
+  }
+}
@@ -18,17 +18,36 @@ package net.codestory.http.compilers;
 import static java.nio.charset.StandardCharsets.*;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.file.*;
 
+import net.codestory.http.misc.*;
+
 public interface CacheEntry extends Serializable {
   String content();
 
   byte[] toBytes();
 
+  // Entries created by the factories below compute it only once
+  default String etag() {
+    return Md5.of(toBytes());
+  }
+
+  // Read-only view of the content, that might live off-heap
+  default ByteBuffer buffer() {
+    return ByteBuffer.wrap(toBytes()).asReadOnlyBuffer();
+  }
+
+  // Memory mapped: the content stays out of the heap and is written from the
+  // mapping, unless it's read as a String or as bytes
+  static CacheEntry mapped(File file) throws IOException {
+    return new MappedCacheEntry(file);
+  }
+
   static CacheEntry fromFile(File file) throws IOException {
     byte[] data = Files.readAllBytes(file.toPath());
 
-    return new CacheEntry() {
+    return new AbstractCacheEntry() {
       @Override
       public String content() {
         return new String(data, UTF_8);
@@ -42,7 +61,7 @@ public interface CacheEntry extends Serializable {
   }
 
   static CacheEntry fromString(String content) {
-    return new CacheEntry() {
+    return new AbstractCacheEntry() {
       @Override
       public String content() {
         return content;
@@ -56,7 +75,7 @@ public interface CacheEntry extends Serializable {
   }
 
   static CacheEntry noCache(String content) {
-    return new CacheEntry() {
+    return new AbstractCacheEntry() {
       @Override
       public String content() {
         return content;
@@ -26,8 +26,10 @@ import static java.nio.file.Files.newBufferedWriter;
 
 public class DiskCache {
   private final File root;
+  private final boolean prodMode;
 
   public DiskCache(String version, boolean prodMode) {
+    this.prodMode = prodMode;
     this.root = Paths.get(System.getProperty("user.home"), ".code-story", "cache", version, prodMode ? "prod" : "dev").toFile();
     Logs.cachingOnDisk(this.root);
   }
@@ -36,7 +38,7 @@ public class DiskCache {
     File file = new File(new File(root, extension.substring(1)), sha1);
     if (file.exists()) {
       try {
-        return CacheEntry.fromFile(file);
+        return read(file);
       } catch (IOException e) {
         // ignore cache entry
       }
@@ -46,10 +48,23 @@ public class DiskCache {
 
     try {
       writeToCache(file, compiled);
-      return CacheEntry.fromString(compiled);
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
+
+    if (prodMode && file.exists()) {
+      try {
+        return CacheEntry.mapped(file);
+      } catch (IOException e) {
+        // fallback to memory
+      }
+    }
+    return CacheEntry.fromString(compiled);
+  }
+
+  // In prod mode, entries don't change and are kept off-heap
+  private CacheEntry read(File file) throws IOException {
+    return prodMode ? CacheEntry.mapped(file) : CacheEntry.fromFile(file);
   }
 
   private static void writeToCache(File file, String data) throws IOException {
@@ -58,12 +73,21 @@ public class DiskCache {
       throw new IllegalStateException("Unable to create cache folder: " + parentFile);
     }
 
-    File tmpFile = new File(file.getAbsolutePath() + ".tmp");
+    // Entries may be mapped, by this process or another one, so they are never
+    // rewritten in place: each writer uses its own temporary file, then moves it
+    Path tmpFile = Files.createTempFile(parentFile.toPath(), file.getName(), ".tmp");
+    try {
+      try (Writer writer = newBufferedWriter(tmpFile, UTF_8)) {
+        writer.append(data);
+      }
 
-    try (Writer writer = newBufferedWriter(tmpFile.toPath(), UTF_8)) {
-      writer.append(data);
+      try {
+        Files.move(tmpFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmpFile);
     }
-
-    tmpFile.renameTo(file);
   }
 }
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import net.codestory.http.misc.*;
+
+// The mapping can't be serialized, a copy of the content is instead
+class MappedCacheEntry extends AbstractCacheEntry {
+  private static final long serialVersionUID = 1L;
+
+  private final transient MappedByteBuffer data;
+
+  MappedCacheEntry(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  @Override
+  public String content() {
+    return UTF_8.decode(data.duplicate()).toString();
+  }
+
+  @Override
+  public byte[] toBytes() {
+    byte[] bytes = new byte[data.capacity()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return data.asReadOnlyBuffer();
+  }
+
+  @Override
+  protected String computeEtag() {
+    return Md5.of(data);
+  }
+
+  private Object writeReplace() {
+    return CacheEntry.fromString(content());
+  }
+}
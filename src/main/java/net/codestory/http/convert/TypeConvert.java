@@ -99,6 +99,24 @@ public class TypeConvert {
     }
   }
 
+  // Leaves the output open
+  public static void writeJson(Object value, OutputStream output) throws IOException {
+    CURRENT_OBJECT_MAPPER.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(output, value);
+  }
+
+  // Leaves the output open. Root values are not separated
+  public static JsonGenerator jsonGenerator(OutputStream output) throws IOException {
+    return CURRENT_OBJECT_MAPPER.getFactory()
+      .createGenerator(output)
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+      .setRootValueSeparator(null);
+  }
+
+  // Flushing is left to the caller
+  public static void writeJson(Object value, JsonGenerator generator) throws IOException {
+    CURRENT_OBJECT_MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE).writeValue(generator, value);
+  }
+
   public static String toJson(Object value) {
     try {
       return CURRENT_OBJECT_MAPPER.writer().writeValueAsString(value);
@@ -27,4 +27,8 @@ public interface Filter extends Serializable {
   default boolean matches(String uri, Context context) {
     return true;
   }
+
+  default FilterScope scope() {
+    return FilterScope.ALL;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.filters;
+
+import java.io.*;
+import java.util.*;
+
+import net.codestory.http.*;
+
+// Static part of a filter's matching rules. It lets the filter chain be
+// precomputed so that filters can be skipped without calling them.
+public class FilterScope implements Serializable {
+  public static final FilterScope ALL = new FilterScope(new String[]{""}, new String[0], new String[0], new String[0], null);
+  public static final FilterScope NONE = new FilterScope(new String[0], new String[0], new String[0], new String[0], null);
+
+  private final String[] uriPrefixes;
+  private final String[] excludedUriPrefixes;
+  private final String[] methods;
+  private final String[] excludedExtensions;
+  private final FilterScope alternative;
+
+  private FilterScope(String[] uriPrefixes, String[] excludedUriPrefixes, String[] methods, String[] excludedExtensions, FilterScope alternative) {
+    this.uriPrefixes = uriPrefixes;
+    this.excludedUriPrefixes = excludedUriPrefixes;
+    this.methods = methods;
+    this.excludedExtensions = excludedExtensions;
+    this.alternative = alternative;
+  }
+
+  public static FilterScope uriPrefixes(String... uriPrefixes) {
+    return new FilterScope(uriPrefixes.clone(), new String[0], new String[0], new String[0], null);
+  }
+
+  public FilterScope excludingUriPrefixes(String... excludedUriPrefixes) {
+    return new FilterScope(uriPrefixes, concat(this.excludedUriPrefixes, excludedUriPrefixes), methods, excludedExtensions, alternative);
+  }
+
+  public FilterScope forMethods(String... methods) {
+    return new FilterScope(uriPrefixes, excludedUriPrefixes, methods.clone(), excludedExtensions, alternative);
+  }
+
+  public FilterScope excludingExtensions(String... excludedExtensions) {
+    return new FilterScope(uriPrefixes, excludedUriPrefixes, methods, concat(this.excludedExtensions, excludedExtensions), alternative);
+  }
+
+  public FilterScope or(FilterScope other) {
+    return new FilterScope(uriPrefixes, excludedUriPrefixes, methods, excludedExtensions, (alternative == null) ? other : alternative.or(other));
+  }
+
+  public boolean isAll() {
+    return (includesAllUris() && (methods.length == 0)) || ((alternative != null) && alternative.isAll());
+  }
+
+  public boolean includes(String uri, Context context) {
+    return includes(uri, (context == null) ? null : context.method());
+  }
+
+  public boolean includes(String uri, String method) {
+    return (includesUri(uri) && includesMethod(method)) || ((alternative != null) && alternative.includes(uri, method));
+  }
+
+  private boolean includesAllUris() {
+    return contains(uriPrefixes, "") && (excludedUriPrefixes.length == 0) && (excludedExtensions.length == 0);
+  }
+
+  private boolean includesUri(String uri) {
+    return startsWithAny(uri, uriPrefixes) && !startsWithAny(uri, excludedUriPrefixes) && !endsWithAny(uri, excludedExtensions);
+  }
+
+  private boolean includesMethod(String method) {
+    return (methods.length == 0) || (method == null) || contains(methods, method);
+  }
+
+  private static boolean startsWithAny(String uri, String[] prefixes) {
+    for (String prefix : prefixes) {
+      if (uri.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean endsWithAny(String uri, String[] suffixes) {
+    for (String suffix : suffixes) {
+      if (uri.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(String[] values, String value) {
+    for (String candidate : values) {
+      if (candidate.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String[] concat(String[] left, String[] right) {
+    String[] all = Arrays.copyOf(left, left.length + right.length);
+    System.arraycopy(right, 0, all, left.length, right.length);
+    return all;
+  }
+}
@@ -20,6 +20,7 @@ import net.codestory.http.Cookie;
 import net.codestory.http.NewCookie;
 import net.codestory.http.convert.TypeConvert;
 import net.codestory.http.filters.Filter;
+import net.codestory.http.filters.FilterScope;
 import net.codestory.http.filters.PayloadSupplier;
 import net.codestory.http.payload.Payload;
 import net.codestory.http.security.SessionIdStore;
@@ -48,6 +49,7 @@ public class CookieAuthFilter implements Filter {
   protected final Users users;
   protected final SessionIdStore sessionIdStore;
   protected final String[] ignoreExtensions;
+  protected final FilterScope scope;
 
   public CookieAuthFilter(String uriPrefix, Users users) {
     this(uriPrefix, users, SessionIdStore.inMemory(), DEFAULT_EXCLUDE);
@@ -66,11 +68,17 @@ public class CookieAuthFilter implements Filter {
     this.users = users;
     this.sessionIdStore = sessionIdStore;
     this.ignoreExtensions = ignoreExtensions;
+    this.scope = FilterScope.uriPrefixes("/auth/").or(FilterScope.uriPrefixes(uriPrefix).excludingExtensions(ignoreExtensions));
   }
 
   @Override
   public boolean matches(String uri, Context context) {
-    return uri.startsWith("/auth/") || (uri.startsWith(uriPrefix) && of(ignoreExtensions).noneMatch(uri::endsWith));
+    return scope.includes(uri, context);
+  }
+
+  @Override
+  public FilterScope scope() {
+    return scope;
   }
 
   @Override
@@ -17,6 +17,7 @@ package net.codestory.http.filters.mixed;
 
 import net.codestory.http.Context;
 import net.codestory.http.filters.Filter;
+import net.codestory.http.filters.FilterScope;
 import net.codestory.http.filters.PayloadSupplier;
 import net.codestory.http.filters.auth.CookieAuthFilter;
 import net.codestory.http.filters.basic.BasicAuthFilter;
@@ -45,6 +46,11 @@ public class MixedAuthFilter implements Filter {
     return authFilter(context).matches(uri, context);
   }
 
+  @Override
+  public FilterScope scope() {
+    return cookieAuthFilter.scope().or(basicAuthFilter.scope());
+  }
+
   @Override
   public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
     return authFilter(context).apply(uri, context, nextFilter);
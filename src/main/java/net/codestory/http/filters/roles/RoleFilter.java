@@ -28,6 +28,11 @@ public class RoleFilter implements Filter {
     rolesPerUriPrefix.forEach((uriPrefix, role) -> permissions.add(new Permission(uriPrefix, role)));
   }
 
+  @Override
+  public FilterScope scope() {
+    return FilterScope.uriPrefixes(permissions.stream().map(permission -> permission.uriPrefix).toArray(String[]::new));
+  }
+
   @Override
   public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
     String role = findRole(uri);
@@ -17,16 +17,33 @@ package net.codestory.http.injection;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toList;
 
 public class Singletons implements IocAdapter {
   private static final int MAX_DEPTH = 100;
 
   private final Map<Class<?>, Object> beansPerType;
+  private final Map<Class<?>, Plan> plansPerType;
+  private final Map<Class<?>, Creation> creations;
+  private final Map<Thread, Creation> awaited;
+  private volatile boolean parallelEagerCreation;
 
   public Singletons(Object... beansToRegister) {
-    this.beansPerType = new HashMap<>();
+    this.beansPerType = new ConcurrentHashMap<>();
+    this.plansPerType = new ConcurrentHashMap<>();
+    this.creations = new ConcurrentHashMap<>();
+    this.awaited = new HashMap<>();
 
     register(Singletons.class, this);
     for (Object beanToRegister : beansToRegister) {
@@ -46,9 +63,15 @@ public class Singletons implements IocAdapter {
     return this;
   }
 
+  // Beans given to createEagerly() that don't depend on each other are then created in parallel
+  public Singletons withParallelEagerCreation() {
+    parallelEagerCreation = true;
+    return this;
+  }
+
   @SuppressWarnings("unchecked")
   @Override
-  public synchronized <T> T get(Class<T> type) {
+  public <T> T get(Class<T> type) {
     // Fast path
     Object singleton = beansPerType.get(type);
     if (singleton != null) {
@@ -59,6 +82,80 @@ public class Singletons implements IocAdapter {
     return doGget(type, 0);
   }
 
+  // No lock is held while beans are created, so that their constructors can
+  // call get() from any thread
+  public void createEagerly(Collection<Class<?>> types) {
+    if (parallelEagerCreation) {
+      createInParallel(types);
+    }
+
+    // Creates what's left and reports errors
+    types.forEach(this::get);
+  }
+
+  private void createInParallel(Collection<Class<?>> types) {
+    Map<Class<?>, Class<?>[]> dependencies = new LinkedHashMap<>();
+
+    Deque<Class<?>> toVisit = new ArrayDeque<>(types);
+    while (!toVisit.isEmpty()) {
+      Class<?> type = toVisit.poll();
+      if (beansPerType.containsKey(type) || dependencies.containsKey(type)) {
+        continue;
+      }
+
+      Plan plan;
+      try {
+        plan = plan(type);
+      } catch (RuntimeException e) {
+        // Will be reported when created sequentially
+        continue;
+      }
+
+      dependencies.put(type, plan.parameterTypes);
+      for (Class<?> parameterType : plan.parameterTypes) {
+        toVisit.add(parameterType);
+      }
+    }
+
+    while (!dependencies.isEmpty()) {
+      List<Class<?>> ready = dependencies.entrySet().stream()
+        .filter(entry -> allCreated(entry.getValue()))
+        .map(Map.Entry::getKey)
+        .collect(toList());
+      if (ready.isEmpty()) {
+        // Missing or cyclic dependencies
+        return;
+      }
+
+      // Errors are rethrown on the calling thread, as they are when created sequentially
+      Map<Class<?>, RuntimeException> errors = new ConcurrentHashMap<>();
+      ready.parallelStream().forEach(type -> {
+        try {
+          get(type);
+        } catch (RuntimeException e) {
+          errors.put(type, e);
+        }
+      });
+      for (Class<?> type : ready) {
+        RuntimeException error = errors.get(type);
+        if (error != null) {
+          throw error;
+        }
+      }
+
+      ready.forEach(dependencies::remove);
+    }
+  }
+
+  private boolean allCreated(Class<?>[] types) {
+    for (Class<?> type : types) {
+      if (!beansPerType.containsKey(type)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T doGget(Class<T> type, int depth) {
     Object singleton = beansPerType.get(type);
@@ -70,10 +167,73 @@ public class Singletons implements IocAdapter {
       throw new IllegalStateException("Cycle in dependencies for " + type);
     }
 
+    // A single thread creates a given type, the others wait for it
+    Creation creation = new Creation();
+    Creation existing = creations.putIfAbsent(type, creation);
+    if (existing != null) {
+      return (T) await(type, existing);
+    }
+
+    try {
+      // Created by another thread in the meantime
+      singleton = beansPerType.get(type);
+      if (singleton == null) {
+        singleton = create(type, depth);
+        beansPerType.put(type, singleton);
+      }
+      creation.result.complete(singleton);
+      return (T) singleton;
+    } catch (RuntimeException e) {
+      creation.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      creations.remove(type, creation);
+    }
+  }
+
+  // Threads creating beans that depend on each other would wait for each other
+  // forever. The chain of creations they wait for is walked to detect that
+  private Object await(Class<?> type, Creation creation) {
+    Thread current = Thread.currentThread();
+
+    synchronized (awaited) {
+      for (Creation next = creation; next != null; next = awaited.get(next.owner)) {
+        if (next.owner == current) {
+          throw new IllegalStateException("Cycle in dependencies for " + type);
+        }
+      }
+      awaited.put(current, creation);
+    }
+
     try {
-      T instance = create(type, depth);
-      beansPerType.put(type, instance);
-      return instance;
+      return creation.await();
+    } finally {
+      synchronized (awaited) {
+        awaited.remove(current);
+      }
+    }
+  }
+
+  private <T> T create(Class<T> type, int depth) {
+    Plan plan;
+    try {
+      plan = plan(type);
+    } catch (RuntimeException e) {
+      throw new IllegalStateException("Unable to create instance of " + type, e);
+    }
+
+    Object[] parameters = new Object[plan.parameterTypes.length];
+    for (int i = 0; i < parameters.length; i++) {
+      parameters[i] = doGget(plan.parameterTypes[i], depth + 1);
+    }
+
+    return newInstance(type, plan, parameters);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T newInstance(Class<T> type, Plan plan, Object[] parameters) {
+    try {
+      return (T) plan.constructor.newInstance(parameters);
     } catch (InvocationTargetException e) {
       throw new IllegalStateException("Unable to create instance of " + type + ". The constructor raised an exception", e.getCause());
     } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
@@ -81,20 +241,34 @@ public class Singletons implements IocAdapter {
     }
   }
 
-  @SuppressWarnings("unchecked")
-  private <T> T create(Class<T> type, int depth) throws InstantiationException, IllegalAccessException, InvocationTargetException {
-    Constructor<T> constructor = getConstructor(type);
-    Class<?>[] parameterTypes = constructor.getParameterTypes();
-    Object[] parameters = new Object[parameterTypes.length];
-    for (int i = 0; i < parameterTypes.length; i++) {
-      parameters[i] = doGget(parameterTypes[i], depth + 1);
+  private Plan plan(Class<?> type) {
+    return plansPerType.computeIfAbsent(type, Plan::new);
+  }
+
+  private static class Creation {
+    final Thread owner = Thread.currentThread();
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    Object await() {
+      try {
+        return result.join();
+      } catch (CompletionException e) {
+        throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+      }
     }
+  }
 
-    return constructor.newInstance(parameters);
+  private static class Plan {
+    final Constructor<?> constructor;
+    final Class<?>[] parameterTypes;
+
+    Plan(Class<?> type) {
+      this.constructor = getConstructor(type);
+      this.parameterTypes = constructor.getParameterTypes();
+    }
   }
 
-  @SuppressWarnings("unchecked")
-  private static <T> Constructor<T> getConstructor(Class<T> type) {
+  private static Constructor<?> getConstructor(Class<?> type) {
     try {
       return type.getDeclaredConstructor();
     } catch (NoSuchMethodException e) {
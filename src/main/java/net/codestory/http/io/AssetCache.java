@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.util.Collections.emptyList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import net.codestory.http.misc.Md5;
+
+// Static assets held in memory, within a budget in bytes. Assets larger than
+// a given size are never admitted, so that a folder of large media files can't
+// fill the heap. When the budget is reached, a new asset only replaces the
+// oldest ones if it was requested more often than them, as estimated by a small
+// frequency sketch (TinyLFU). Assets read since the last admission attempt get
+// a second chance (CLOCK). Hot assets thus stay in memory while one-off
+// requests can't flush them. Hits take no lock: they bump the lock-free sketch
+// and flag the asset. Admissions are serialized and only consider a few
+// candidates, so that a miss costs the same whatever the number of assets.
+public class AssetCache {
+  public static final long MAX_ENTRY_SIZE = 1024 * 1024;
+
+  private static final int MAX_CANDIDATES = 16;
+
+  private final long maxSize;
+  private final long maxEntrySize;
+  private final FrequencySketch frequencies = new FrequencySketch(4096);
+  private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+  private final LinkedHashSet<String> order = new LinkedHashSet<>();
+  private final Object admissionLock = new Object();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+  private volatile long size;
+
+  public AssetCache(long maxSize) {
+    this(maxSize, Math.min(MAX_ENTRY_SIZE, maxSize));
+  }
+
+  public AssetCache(long maxSize, long maxEntrySize) {
+    this.maxSize = maxSize;
+    this.maxEntrySize = maxEntrySize;
+  }
+
+  @FunctionalInterface
+  public interface Loader {
+    byte[] load() throws IOException;
+  }
+
+  // Null when the asset is not, or not yet, worth keeping in memory. An asset
+  // that was loaded but couldn't be admitted is served from the heap
+  public Asset get(String key, long length, long lastModified, Loader loader) throws IOException {
+    frequencies.increment(key);
+
+    Asset cached = assets.get(key);
+    if ((cached != null) && (cached.version == length) && (cached.lastModified == lastModified)) {
+      if (!cached.accessed) {
+        cached.accessed = true;
+      }
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+
+    synchronized (admissionLock) {
+      if (cached != null) {
+        remove(key, cached);
+      }
+      if ((length > maxEntrySize) || (victims(key, length, true) == null)) {
+        rejections.increment();
+        return null;
+      }
+    }
+
+    byte[] bytes = loader.load();
+
+    synchronized (admissionLock) {
+      List<String> victims = (bytes.length <= maxEntrySize) ? victims(key, bytes.length, false) : null;
+      if (victims != null) {
+        for (String victim : victims) {
+          Asset evicted = assets.get(victim);
+          if ((evicted != null) && remove(victim, evicted)) {
+            evictions.increment();
+          }
+        }
+
+        Asset asset = new Asset(bytes, length, lastModified, true);
+        Asset previous = assets.put(key, asset);
+        if (previous == null) {
+          order.add(key);
+        }
+        size += asset.length() - ((previous == null) ? 0 : previous.length());
+        return asset;
+      }
+    }
+
+    rejections.increment();
+    return new Asset(bytes, length, lastModified, false);
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public int count() {
+    return assets.size();
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  public long rejectionCount() {
+    return rejections.sum();
+  }
+
+  // Room is made by evicting the oldest assets, as long as they are less
+  // frequently requested than the candidate. Null if there's no room among the
+  // first candidates. Recently read assets are passed over. When advancing,
+  // their flag is cleared and they go back to the end of the queue; the check
+  // made after loading leaves them alone.
+  private List<String> victims(String key, long length, boolean advance) {
+    long needed = size + length - maxSize;
+    if (needed <= 0) {
+      return emptyList();
+    }
+
+    int frequency = frequencies.frequency(key);
+    List<String> victims = new ArrayList<>();
+    List<String> secondChances = new ArrayList<>();
+    try {
+      Iterator<String> candidates = order.iterator();
+      for (int i = 0; (i < MAX_CANDIDATES) && candidates.hasNext(); i++) {
+        String candidate = candidates.next();
+        Asset asset = assets.get(candidate);
+        if (asset.accessed) {
+          if (advance) {
+            asset.accessed = false;
+            secondChances.add(candidate);
+          }
+          continue;
+        }
+        if (candidate.equals(key) || (frequencies.frequency(candidate) >= frequency)) {
+          return null;
+        }
+
+        victims.add(candidate);
+        needed -= asset.length();
+        if (needed <= 0) {
+          return victims;
+        }
+      }
+      return null;
+    } finally {
+      order.removeAll(secondChances);
+      order.addAll(secondChances);
+    }
+  }
+
+  private boolean remove(String key, Asset asset) {
+    if (!assets.remove(key, asset)) {
+      return false;
+    }
+    order.remove(key);
+    size -= asset.length();
+    return true;
+  }
+
+  // Bytes of cached assets are kept off-heap, in direct buffers, so that
+  // long-lived assets don't add up in the old generation
+  public static class Asset {
+    private final ByteBuffer data;
+    private final long version;
+    private final long lastModified;
+    private final String etag;
+    private final boolean direct;
+    private volatile ByteBuffer gzipped;
+    private volatile boolean accessed;
+
+    Asset(byte[] bytes, long version, long lastModified, boolean direct) {
+      this.data = direct ? direct(bytes) : ByteBuffer.wrap(bytes);
+      this.direct = direct;
+      this.version = version;
+      this.lastModified = lastModified;
+      this.etag = (lastModified > 0) ? Long.toHexString(lastModified) + '-' + Long.toHexString(bytes.length) : Md5.of(bytes);
+    }
+
+    public ByteBuffer buffer() {
+      return data.asReadOnlyBuffer();
+    }
+
+    public int length() {
+      return data.capacity();
+    }
+
+    public long lastModified() {
+      return lastModified;
+    }
+
+    public String etag() {
+      return etag;
+    }
+
+    // Compressed once, on first use
+    public ByteBuffer gzipped() throws IOException {
+      ByteBuffer compressed = gzipped;
+      if (compressed == null) {
+        byte[] bytes = new byte[data.capacity()];
+        data.duplicate().get(bytes);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output) {
+          {
+            def.setLevel(Deflater.BEST_COMPRESSION);
+          }
+        }) {
+          gzip.write(bytes);
+        }
+        compressed = gzipped = direct ? direct(output.toByteArray()) : ByteBuffer.wrap(output.toByteArray());
+      }
+      return compressed.asReadOnlyBuffer();
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+      buffer.put(bytes);
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+  // Count-min sketch of 4 bit counters, halved once enough increments were
+  // made so that past popularity fades away. Updated without locks: a lost
+  // update only makes an estimate slightly off
+  static class FrequencySketch {
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicIntegerArray counters;
+    private final int size;
+    private final int mask;
+    private final int resetAfter;
+    private final AtomicInteger increments = new AtomicInteger();
+
+    FrequencySketch(int width) {
+      this.size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+      this.counters = new AtomicIntegerArray(SEEDS.length * size);
+      this.mask = size - 1;
+      this.resetAfter = 10 * size;
+    }
+
+    void increment(String key) {
+      int hash = key.hashCode();
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = index(hash, i);
+        int count = counters.get(index);
+        if (count < 15) {
+          counters.compareAndSet(index, count, count + 1);
+        }
+      }
+
+      // Only the thread reaching the threshold halves the counters
+      if (increments.incrementAndGet() == resetAfter) {
+        for (int j = 0; j < counters.length(); j++) {
+          counters.set(j, counters.get(j) >> 1);
+        }
+        increments.addAndGet(-resetAfter / 2);
+      }
+    }
+
+    int frequency(String key) {
+      int hash = key.hashCode();
+      int frequency = 15;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, counters.get(index(hash, i)));
+      }
+      return frequency;
+    }
+
+    private int index(int hash, int row) {
+      int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+      return (row * size) + ((h ^ (h >>> 15)) & mask);
+    }
+  }
+}
@@ -23,6 +23,8 @@ import java.net.*;
 import java.util.*;
 import java.util.function.Predicate;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class ClasspathScanner {
   private static final String DOT_CLASS = ".class";
 
@@ -40,6 +42,78 @@ public class ClasspathScanner {
     return classes;
   }
 
+  // Reads the types listed in the indexes found on the classpath. Empty, so that
+  // the caller scans instead, when a classpath root with this package has no
+  // index, or when an index lists a class that's gone. Only the indexes and the
+  // package's folders are looked up, the classpath is never listed.
+  public Optional<Set<Class<?>>> getIndexedTypes(String index, String packageToScan) {
+    if (packageToScan.isEmpty()) {
+      // Every library would need an index
+      return Optional.empty();
+    }
+
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+    String packagePath = packageToScan.replace('.', '/') + '/';
+
+    Map<String, URL> indexesPerRoot = roots(index);
+    Set<String> packageRoots = roots(packagePath).keySet();
+    if (packageRoots.isEmpty() || !indexesPerRoot.keySet().containsAll(packageRoots)) {
+      return Optional.empty();
+    }
+
+    Set<Class<?>> classes = new LinkedHashSet<>();
+    for (URL indexUrl : indexesPerRoot.values()) {
+      for (String name : readLines(indexUrl)) {
+        name = name.trim();
+        if (!name.isEmpty() && !name.startsWith("#") && name.startsWith(packageToScan + ".")) {
+          try {
+            classes.add(Class.forName(name, false, classLoader));
+          } catch (ClassNotFoundException e) {
+            return Optional.empty();
+          }
+        }
+      }
+    }
+
+    return Optional.of(classes);
+  }
+
+  // Classpath roots that have this resource, with its url
+  private static Map<String, URL> roots(String name) {
+    Map<String, URL> roots = new LinkedHashMap<>();
+
+    try {
+      Enumeration<URL> urls = Thread.currentThread().getContextClassLoader().getResources(name);
+      while (urls.hasMoreElements()) {
+        URL url = urls.nextElement();
+        roots.put(root(url, name).toExternalForm(), url);
+      }
+    } catch (IOException e) {
+      // Ignore
+    }
+
+    return roots;
+  }
+
+  private static URL root(URL url, String name) throws MalformedURLException {
+    String externalForm = url.toExternalForm().replace('\\', '/');
+    int index = externalForm.lastIndexOf(name);
+    return (index == -1) ? url : new URL(externalForm.substring(0, index));
+  }
+
+  private static List<String> readLines(URL url) {
+    List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } catch (IOException e) {
+      // An unreadable index lists nothing
+    }
+    return lines;
+  }
+
   public Set<String> listPaths(String prefix, Predicate<String> filter) {
     Set<String> paths = new LinkedHashSet<>();
 
@@ -61,14 +135,7 @@ public class ClasspathScanner {
     try {
       Enumeration<URL> urls = Thread.currentThread().getContextClassLoader().getResources(name);
       while (urls.hasMoreElements()) {
-        URL url = urls.nextElement();
-        String externalForm = url.toExternalForm().replace('\\', '/');
-        int index = externalForm.lastIndexOf(name);
-        if (index != -1) {
-          result.add(new URL(externalForm.substring(0, index)));
-        } else {
-          result.add(url);
-        }
+        result.add(root(urls.nextElement(), name));
       }
     } catch (IOException e) {
       // Ignore
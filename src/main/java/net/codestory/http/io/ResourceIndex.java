@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.nio.file.FileVisitOption.FOLLOW_LINKS;
+import static java.util.Collections.unmodifiableMap;
+import static net.codestory.http.io.FileVisitor.onFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipException;
+
+import io.github.lukehutch.fastclasspathscanner.FastClasspathScanner;
+
+import net.codestory.http.types.ContentTypes;
+
+// Every file of the app folder, on the file system and on the classpath, scanned
+// once. Used in prod mode, where these files don't change, to resolve uris
+// and paths with a lookup instead of probing the file system and class loader.
+public class ResourceIndex {
+  public enum Origin {
+    FILESYSTEM, CLASSPATH
+  }
+
+  private final Map<String, Entry> entries;
+  private final Map<String, Alias> uris;
+
+  private ResourceIndex(Map<String, Entry> entries) {
+    this.entries = unmodifiableMap(entries);
+    this.uris = unmodifiableMap(aliases(entries));
+  }
+
+  public static ResourceIndex scan(File workingDir, String appFolder) {
+    // Files take precedence over classpath resources, and classpath order is kept
+    Map<String, Entry> entries = new HashMap<>();
+    scanFileSystem(new File(workingDir, appFolder), appFolder, entries);
+    scanClassPath(appFolder, entries);
+    return new ResourceIndex(entries);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  // Path of the form app/..., as found in the app folder or on the classpath
+  public Entry get(String pathWithPrefix) {
+    return entries.get(pathWithPrefix);
+  }
+
+  public boolean contains(String pathWithPrefix) {
+    return entries.containsKey(pathWithPrefix);
+  }
+
+  // Same resolution as Resources.findExistingPath, with one lookup
+  public Path findExistingPath(String uri) {
+    boolean absolute = uri.startsWith("/");
+    Alias alias = uris.get(normalize(absolute ? uri : "/" + uri));
+    if (alias == null) {
+      return null;
+    }
+    return absolute ? alias.path : alias.path.getRoot().relativize(alias.path);
+  }
+
+  // Empty and . segments are dropped, as the file system does when probing.
+  // .. segments are kept, so that such uris are never found
+  static String normalize(String uri) {
+    if (!uri.contains("//") && !uri.contains("/./") && !uri.endsWith("/.")) {
+      return uri;
+    }
+
+    StringBuilder normalized = new StringBuilder();
+    for (String segment : uri.split("/")) {
+      if (!segment.isEmpty() && !".".equals(segment)) {
+        normalized.append('/').append(segment);
+      }
+    }
+    if (uri.endsWith("/") || uri.endsWith("/.") || (normalized.length() == 0)) {
+      normalized.append('/');
+    }
+    return normalized.toString();
+  }
+
+  private static void scanFileSystem(File folder, String appFolder, Map<String, Entry> entries) {
+    if (!folder.isDirectory()) {
+      return;
+    }
+
+    Path root = folder.toPath();
+    try {
+      Files.walkFileTree(root, EnumSet.of(FOLLOW_LINKS), Integer.MAX_VALUE, onFile(path -> {
+        String name = appFolder + "/" + Resources.relativePath(root, path);
+        File file = path.toFile();
+        entries.putIfAbsent(name, new Entry(name, file.length(), file.lastModified(), Origin.FILESYSTEM, file, null));
+      }));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to scan " + folder, e);
+    }
+  }
+
+  // Jars are read entry by entry, since they don't always have entries for
+  // their folders. Roots the class loader knows about but that aren't
+  // classpath elements are scanned last
+  private static void scanClassPath(String appFolder, Map<String, Entry> entries) {
+    try {
+      for (File element : new FastClasspathScanner().getUniqueClasspathElements()) {
+        if (element.isDirectory()) {
+          scanClassPathFolder(new File(element, appFolder), appFolder, entries);
+        } else if (element.isFile()) {
+          scanJar(element, appFolder, entries);
+        }
+      }
+
+      Enumeration<URL> roots = Thread.currentThread().getContextClassLoader().getResources(appFolder);
+      while (roots.hasMoreElements()) {
+        URL root = roots.nextElement();
+        try {
+          if ("file".equals(root.getProtocol())) {
+            scanClassPathFolder(new File(root.toURI()), appFolder, entries);
+          } else if ("jar".equals(root.getProtocol())) {
+            URLConnection connection = root.openConnection();
+            if (connection instanceof JarURLConnection) {
+              scanJar(new File(((JarURLConnection) connection).getJarFileURL().toURI()), appFolder, entries);
+            }
+          }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+          // Ignore
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to scan classpath for " + appFolder, e);
+    }
+  }
+
+  private static void scanClassPathFolder(File folder, String appFolder, Map<String, Entry> entries) throws IOException {
+    if (!folder.isDirectory()) {
+      return;
+    }
+
+    Path rootPath = folder.toPath();
+    Files.walkFileTree(rootPath, EnumSet.of(FOLLOW_LINKS), Integer.MAX_VALUE, onFile(path -> {
+      String name = appFolder + "/" + Resources.relativePath(rootPath, path);
+      File file = path.toFile();
+      entries.putIfAbsent(name, new Entry(name, file.length(), file.lastModified(), Origin.CLASSPATH, file, null));
+    }));
+  }
+
+  private static void scanJar(File file, String appFolder, Map<String, Entry> entries) throws IOException {
+    String base = "jar:" + file.toURI() + "!/";
+    String prefix = appFolder + "/";
+    try (JarFile jar = new JarFile(file)) {
+      Enumeration<JarEntry> jarEntries = jar.entries();
+      while (jarEntries.hasMoreElements()) {
+        JarEntry jarEntry = jarEntries.nextElement();
+        String name = jarEntry.getName();
+        if (!jarEntry.isDirectory() && name.startsWith(prefix) && !entries.containsKey(name)) {
+          entries.put(name, new Entry(name, jarEntry.getSize(), -1, Origin.CLASSPATH, null, new URL(base + name)));
+        }
+      }
+    } catch (ZipException e) {
+      // Not a jar
+    }
+  }
+
+  // Each uri is mapped to the file findExistingPath would find first: the uri
+  // itself then with each template extension, then the index of the folder
+  private static Map<String, Alias> aliases(Map<String, Entry> entries) {
+    String[] extensions = Resources.TEMPLATE_EXTENSIONS;
+
+    Map<String, Alias> aliases = new HashMap<>();
+    for (String name : entries.keySet()) {
+      String path = name.substring(name.indexOf('/'));
+
+      for (int i = 0; i < extensions.length; i++) {
+        String extension = extensions[i];
+        if (!path.endsWith(extension)) {
+          continue;
+        }
+
+        String base = path.substring(0, path.length() - extension.length());
+        if (!base.endsWith("/")) {
+          alias(aliases, base, i, path);
+        }
+        if (base.endsWith("/index")) {
+          String folder = base.substring(0, base.length() - "index".length());
+          alias(aliases, folder, i, path);
+          if (folder.length() > 1) {
+            alias(aliases, folder.substring(0, folder.length() - 1), extensions.length + i, path);
+          }
+        }
+      }
+    }
+    return aliases;
+  }
+
+  private static void alias(Map<String, Alias> aliases, String uri, int rank, String path) {
+    Alias existing = aliases.get(uri);
+    if ((existing == null) || (rank < existing.rank)) {
+      aliases.put(uri, new Alias(rank, Paths.get(path)));
+    }
+  }
+
+  private static class Alias {
+    final int rank;
+    final Path path;
+
+    Alias(int rank, Path path) {
+      this.rank = rank;
+      this.path = path;
+    }
+  }
+
+  public static class Entry {
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String contentType;
+    private final Origin origin;
+    private final File file;
+    private final URL url;
+
+    private Entry(String name, long size, long lastModified, Origin origin, File file, URL url) {
+      this.name = name;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentType = ContentTypes.get(name);
+      this.origin = origin;
+      this.file = file;
+      this.url = url;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public long size() {
+      return size;
+    }
+
+    // -1 for resources packaged in a jar
+    public long lastModified() {
+      return lastModified;
+    }
+
+    public String contentType() {
+      return contentType;
+    }
+
+    public Origin origin() {
+      return origin;
+    }
+
+    // Null for resources packaged in a jar
+    public File file() {
+      return file;
+    }
+
+    public URL url() {
+      return url;
+    }
+  }
+}
@@ -27,12 +27,21 @@ import net.codestory.http.compilers.*;
 import net.codestory.http.misc.*;
 
 public class Resources implements Serializable {
-  private static final String[] TEMPLATE_EXTENSIONS = {"", ".html", ".md", ".markdown", ".txt"};
+  static final String[] TEMPLATE_EXTENSIONS = {"", ".html", ".md", ".markdown", ".txt"};
 
   private final Env env;
+  private final transient ResourceIndex index;
+  private final transient AssetCache assetCache;
 
   public Resources(Env env) {
+    this(env, env.prodMode() ? env.resourceIndex() : null);
+  }
+
+  // In prod mode, resources are looked up in an index built once
+  public Resources(Env env, ResourceIndex index) {
     this.env = env;
+    this.index = index;
+    this.assetCache = ((index != null) && (env.assetCacheSize() > 0)) ? new AssetCache(env.assetCacheSize() * 1024L * 1024L) : null;
   }
 
   public SourceFile sourceFile(Path path) throws IOException {
@@ -49,6 +58,10 @@ public class Resources implements Serializable {
   }
 
   public Path findExistingPath(String uri) {
+    if (index != null) {
+      return index.findExistingPath(uri);
+    }
+
     if (!uri.endsWith("/")) {
       // Try with extension
       for (String extension : TEMPLATE_EXTENSIONS) {
@@ -70,8 +83,30 @@ public class Resources implements Serializable {
     return null;
   }
 
+  // Null when assets are not cached, or when this one is not worth caching
+  public AssetCache.Asset cachedAsset(Path path) throws IOException {
+    if (assetCache == null) {
+      return null;
+    }
+
+    ResourceIndex.Entry entry = index.get(withPrefix(path));
+    if (entry == null) {
+      return null;
+    }
+    return assetCache.get(entry.name(), entry.size(), entry.lastModified(), () -> readBytes(entry));
+  }
+
+  public AssetCache assetCache() {
+    return assetCache;
+  }
+
   public long lastModified(Path path) {
     String pathWithPrefix = withPrefix(path);
+    if (index != null) {
+      ResourceIndex.Entry entry = index.get(pathWithPrefix);
+      return (entry == null) ? -1 : entry.lastModified();
+    }
+
     if (existsInFileSystem(pathWithPrefix)) {
       return file(pathWithPrefix).lastModified();
     }
@@ -84,18 +119,79 @@ public class Resources implements Serializable {
     return -1;
   }
 
+  // In bytes, -1 if unknown
+  public long size(Path path) {
+    String pathWithPrefix = withPrefix(path);
+    if (index != null) {
+      ResourceIndex.Entry entry = index.get(pathWithPrefix);
+      return (entry == null) ? -1 : entry.size();
+    }
+
+    if (existsInFileSystem(pathWithPrefix)) {
+      return file(pathWithPrefix).length();
+    }
+
+    URL url = getResource(pathWithPrefix);
+    if (url == null) {
+      return -1;
+    }
+
+    File file = fileForClasspath(url);
+    if (file != null) {
+      return file.length();
+    }
+
+    try {
+      return url.openConnection().getContentLengthLong();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  // Null if the resource is not a plain file, for eg. when it's packaged in a jar
+  public File existingFile(Path path) {
+    String pathWithPrefix = withPrefix(path);
+    if (index != null) {
+      ResourceIndex.Entry entry = index.get(pathWithPrefix);
+      return (entry == null) ? null : entry.file();
+    }
+
+    if (existsInFileSystem(pathWithPrefix)) {
+      return file(pathWithPrefix);
+    }
+
+    URL url = getResource(pathWithPrefix);
+    if (url == null) {
+      return null;
+    }
+
+    File file = fileForClasspath(url);
+    return ((file != null) && file.isFile()) ? file : null;
+  }
+
   public boolean exists(Path path) {
     String pathWithPrefix = withPrefix(path);
+    if (index != null) {
+      return index.contains(pathWithPrefix);
+    }
     return existsInFileSystem(pathWithPrefix) || existsInClassPath(pathWithPrefix);
   }
 
   public String read(Path path, Charset charset) throws IOException {
     String pathWithPrefix = withPrefix(path);
+    ResourceIndex.Entry entry = (index == null) ? null : index.get(pathWithPrefix);
+    if (entry != null) {
+      return new String(readBytes(entry), charset);
+    }
     return existsInFileSystem(pathWithPrefix) ? readFile(file(pathWithPrefix), charset) : readClasspath(pathWithPrefix, charset);
   }
 
   public byte[] readBytes(Path path) throws IOException {
     String pathWithPrefix = withPrefix(path);
+    ResourceIndex.Entry entry = (index == null) ? null : index.get(pathWithPrefix);
+    if (entry != null) {
+      return readBytes(entry);
+    }
     return existsInFileSystem(pathWithPrefix) ? readFileBytes(file(pathWithPrefix)) : readClasspathBytes(pathWithPrefix);
   }
 
@@ -115,6 +211,16 @@ public class Resources implements Serializable {
     return toUnixString(Paths.get(env.appFolder(), path.toString()));
   }
 
+  private byte[] readBytes(ResourceIndex.Entry entry) throws IOException {
+    if (entry.file() != null) {
+      return readFileBytes(entry.file());
+    }
+
+    try (InputStream from = entry.url().openStream()) {
+      return InputStreams.readBytes(from);
+    }
+  }
+
   private boolean existsInClassPath(String path) {
     URL url = getResource(path);
     if (url == null) {
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.util.Collections.unmodifiableSet;
+import static net.codestory.http.io.Strings.substringAfter;
+import static org.webjars.WebJarAssetLocator.WEBJARS_PATH_PREFIX;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.codestory.http.misc.WebJarUrlFinder;
+
+// Every webjar file on the classpath, listed once. Used in prod mode, where the
+// classpath doesn't change, to match /webjars/ uris with a lookup. The files
+// that are actually requested are read once and then kept in memory, along with
+// their compressed version and a content hash. Minified versions are preferred.
+public class WebJarIndex {
+  private static final String RESOURCES = "META-INF/resources";
+
+  private final Set<String> uris;
+  private final Map<String, AssetCache.Asset> assets = new ConcurrentHashMap<>();
+
+  private WebJarIndex(Set<String> uris) {
+    this.uris = unmodifiableSet(uris);
+  }
+
+  public static WebJarIndex scan() {
+    Set<String> uris = new LinkedHashSet<>();
+    for (String path : new ClasspathScanner().getResources(WEBJARS_PATH_PREFIX)) {
+      if (!path.endsWith("/")) {
+        uris.add(substringAfter(path, RESOURCES));
+      }
+    }
+    return new WebJarIndex(uris);
+  }
+
+  public int size() {
+    return uris.size();
+  }
+
+  public boolean contains(String uri) {
+    return uris.contains(uri);
+  }
+
+  // Null for unknown uris
+  public AssetCache.Asset get(String uri) {
+    if (!uris.contains(uri)) {
+      return null;
+    }
+
+    String minified = WebJarUrlFinder.minified(uri);
+    return assets.computeIfAbsent(uris.contains(minified) ? minified : uri, WebJarIndex::load);
+  }
+
+  private static AssetCache.Asset load(String uri) {
+    URL url = ClassPaths.getResource(RESOURCES + uri);
+    if (url == null) {
+      throw new IllegalStateException("Unable to find webjar file: " + uri);
+    }
+
+    try (InputStream stream = url.openStream()) {
+      AssetCache.Asset asset = new AssetCache.Asset(InputStreams.readBytes(stream), 0, 0, true);
+      asset.gzipped();
+      return asset;
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read webjar file: " + uri, e);
+    }
+  }
+}
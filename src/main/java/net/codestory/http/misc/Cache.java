@@ -17,19 +17,167 @@ package net.codestory.http.misc;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.function.*;
 
+// Memoizes a function, within a number of entries and a total weight. Reads are
+// lock-free. When a bound is exceeded, entries are evicted in insertion order,
+// except that those read since they were last considered get a second chance
+// (CLOCK), so that frequently used entries stay. Entries can expire, and
+// negative results, such as resources not found, can expire sooner so that
+// probing many unknown keys doesn't keep them for long.
 public class Cache<K, V> implements Function<K, V> {
+  public static final int DEFAULT_MAX_SIZE = 10_000;
+
   private final Function<K, V> delegate;
-  private final Map<K, V> keyValues;
+  private final int maxSize;
+  private final long maxWeight;
+  private final ToLongFunction<V> weigher;
+  private final long expiryNanos;
+  private final Predicate<V> isNegative;
+  private final long negativeExpiryNanos;
+
+  private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final Queue<K> order = new ConcurrentLinkedQueue<>();
+  private final AtomicLong weight = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
 
   public Cache(Function<K, V> delegate) {
+    this(delegate, DEFAULT_MAX_SIZE, Long.MAX_VALUE, value -> 1, 0, value -> false, 0);
+  }
+
+  private Cache(Function<K, V> delegate, int maxSize, long maxWeight, ToLongFunction<V> weigher, long expiryNanos, Predicate<V> isNegative, long negativeExpiryNanos) {
     this.delegate = delegate;
-    this.keyValues = new ConcurrentHashMap<>();
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.expiryNanos = expiryNanos;
+    this.isNegative = isNegative;
+    this.negativeExpiryNanos = negativeExpiryNanos;
+  }
+
+  public Cache<K, V> withMaxSize(int newMaxSize) {
+    return new Cache<>(delegate, newMaxSize, maxWeight, weigher, expiryNanos, isNegative, negativeExpiryNanos);
+  }
+
+  public Cache<K, V> withMaxWeight(long newMaxWeight, ToLongFunction<V> newWeigher) {
+    return new Cache<>(delegate, maxSize, newMaxWeight, newWeigher, expiryNanos, isNegative, negativeExpiryNanos);
+  }
+
+  public Cache<K, V> withExpiry(long duration, TimeUnit unit) {
+    return new Cache<>(delegate, maxSize, maxWeight, weigher, unit.toNanos(duration), isNegative, negativeExpiryNanos);
+  }
+
+  public Cache<K, V> withNegativeExpiry(Predicate<V> newIsNegative, long duration, TimeUnit unit) {
+    return new Cache<>(delegate, maxSize, maxWeight, weigher, expiryNanos, newIsNegative, unit.toNanos(duration));
   }
 
   @Override
   public V apply(K key) {
-    return keyValues.computeIfAbsent(key, delegate);
+    long now = System.nanoTime();
+
+    Entry<V> entry = entries.get(key);
+    if ((entry != null) && !entry.isExpired(now)) {
+      entry.accessed = true;
+      hits.increment();
+      return entry.value;
+    }
+
+    // Loaded outside of the map's locks, so that a slow delegate doesn't block
+    // other keys. Concurrent misses on a key may load it more than once
+    misses.increment();
+    Entry<V> loaded = newEntry(delegate.apply(key), now);
+
+    while (true) {
+      if (entry == null) {
+        entry = entries.putIfAbsent(key, loaded);
+        if (entry == null) {
+          weight.addAndGet(loaded.weight);
+          order.add(key);
+          evictIfNeeded();
+          return loaded.value;
+        }
+      }
+      if (!entry.isExpired(now)) {
+        return entry.value;
+      }
+      if (entries.replace(key, entry, loaded)) {
+        weight.addAndGet(loaded.weight - entry.weight);
+        if (weight.get() > maxWeight) {
+          evictIfNeeded();
+        }
+        return loaded.value;
+      }
+      entry = entries.get(key);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long weight() {
+    return weight.get();
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  private Entry<V> newEntry(V value, long now) {
+    long ttl = isNegative.test(value) ? negativeExpiryNanos : expiryNanos;
+    return new Entry<>(value, weigher.applyAsLong(value), (ttl > 0) ? now + ttl : 0);
+  }
+
+  private void evictIfNeeded() {
+    while ((entries.size() > maxSize) || (weight.get() > maxWeight)) {
+      K key = order.poll();
+      if (key == null) {
+        return;
+      }
+
+      Entry<V> entry = entries.get(key);
+      if (entry == null) {
+        continue;
+      }
+      if (entry.accessed && !entry.isExpired(System.nanoTime())) {
+        entry.accessed = false;
+        order.add(key);
+        continue;
+      }
+      if (entries.remove(key, entry)) {
+        weight.addAndGet(-entry.weight);
+        evictions.increment();
+      } else {
+        order.add(key);
+      }
+    }
+  }
+
+  private static class Entry<V> {
+    final V value;
+    final long weight;
+    final long expiresAt;
+    volatile boolean accessed;
+
+    Entry(V value, long weight, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(long now) {
+      return (expiresAt != 0) && ((now - expiresAt) >= 0);
+    }
   }
 }
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import java.util.zip.*;
+
+// Fast, non cryptographic, hash. Good enough to tell two versions of a response apart.
+public class Crc32 {
+  private Crc32() {
+    // Static class
+  }
+
+  public static String of(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return Long.toHexString(crc.getValue()) + '-' + Integer.toHexString(data.length);
+  }
+}
@@ -15,6 +15,7 @@
  */
 package net.codestory.http.misc;
 
+import net.codestory.http.io.ResourceIndex;
 import net.codestory.http.reload.MasterFolderWatch;
 
 import java.io.File;
@@ -36,7 +37,12 @@ public class Env implements Serializable {
   private final boolean liveReloadServer;
   private final boolean injectLiveReloadScript;
   private final boolean diskCache;
+  private final boolean fastEtag;
+  private final int asyncTimeout;
+  private final int assetCacheSize;
+  private final int jsonFlushBatchSize;
   private final Supplier<MasterFolderWatch> folderWatch;
+  private final Supplier<ResourceIndex> resourceIndex;
 
   public Env() {
     this(
@@ -47,11 +53,15 @@ public class Env implements Serializable {
       !getBoolean("http.disable.gzip", false),
       getBoolean("http.livereload.server", true),
       getBoolean("http.livereload.script", true),
-      getBoolean("http.cache.disk", true)
+      getBoolean("http.cache.disk", true),
+      getBoolean("http.etag.fast", false),
+      getInt("http.async.timeout", 0),
+      getInt("http.cache.assets", 0),
+      getInt("http.json.flush", 100)
     );
   }
 
-  private Env(File workingDir, boolean prodMode, boolean classPath, boolean filesystem, boolean gzip, boolean liveReloadServer, boolean injectLiveReloadScript, boolean diskCache) {
+  private Env(File workingDir, boolean prodMode, boolean classPath, boolean filesystem, boolean gzip, boolean liveReloadServer, boolean injectLiveReloadScript, boolean diskCache, boolean fastEtag, int asyncTimeout, int assetCacheSize, int jsonFlushBatchSize) {
     this.workingDir = workingDir;
     this.prodMode = prodMode;
     this.classPath = classPath;
@@ -60,51 +70,72 @@ public class Env implements Serializable {
     this.liveReloadServer = liveReloadServer;
     this.injectLiveReloadScript = injectLiveReloadScript;
     this.diskCache = diskCache;
+    this.fastEtag = fastEtag;
+    this.asyncTimeout = asyncTimeout;
+    this.assetCacheSize = assetCacheSize;
+    this.jsonFlushBatchSize = jsonFlushBatchSize;
     this.folderWatch = memoize(() -> new MasterFolderWatch(this));
+    this.resourceIndex = memoize(() -> ResourceIndex.scan(workingDir, appFolder()));
   }
 
   // helper factories
 
   public static Env prod() {
-    return new Env(new File("."), true, true, true, true, false, false, true);
+    return new Env(new File("."), true, true, true, true, false, false, true, false, 0, 0, 100);
   }
 
   public static Env dev() {
-    return new Env(new File("."), false, true, true, false, true, true, true);
+    return new Env(new File("."), false, true, true, false, true, true, true, false, 0, 0, 100);
   }
 
-  public static Env dev(File workingDir) { return new Env(workingDir, false, false, true, false, true, true, true);}
+  public static Env dev(File workingDir) { return new Env(workingDir, false, false, true, false, true, true, true, false, 0, 0, 100);}
 
   public Env withWorkingDir(File newWorkingDir) {
-    return new Env(newWorkingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(newWorkingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withProdMode(boolean newProdMode) {
-    return new Env(workingDir, newProdMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, newProdMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withClassPath(boolean shouldScanCassPath) {
-    return new Env(workingDir, prodMode, shouldScanCassPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, shouldScanCassPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withFilesystem(boolean shouldScanFilesystem) {
-    return new Env(workingDir, prodMode, classPath, shouldScanFilesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, shouldScanFilesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withGzip(boolean shouldGzipResponse) {
-    return new Env(workingDir, prodMode, classPath, filesystem, shouldGzipResponse, liveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, shouldGzipResponse, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withLiveReloadServer(boolean shouldStartLiveReloadServer) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, shouldStartLiveReloadServer, injectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, shouldStartLiveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withInjectLiveReloadScript(boolean shouldInjectLiveReloadScript) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, shouldInjectLiveReloadScript, diskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, shouldInjectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
   }
 
   public Env withDiskCache(boolean shouldUseDiskCache) {
-    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, shouldUseDiskCache);
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, shouldUseDiskCache, fastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
+  }
+
+  public Env withFastEtag(boolean shouldUseFastEtag) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, shouldUseFastEtag, asyncTimeout, assetCacheSize, jsonFlushBatchSize);
+  }
+
+  public Env withAsyncTimeout(int timeoutInMillis) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, timeoutInMillis, assetCacheSize, jsonFlushBatchSize);
+  }
+
+  public Env withAssetCacheSize(int sizeInMb) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, sizeInMb, jsonFlushBatchSize);
+  }
+
+  public Env withJsonFlushBatchSize(int itemsPerFlush) {
+    return new Env(workingDir, prodMode, classPath, filesystem, gzip, liveReloadServer, injectLiveReloadScript, diskCache, fastEtag, asyncTimeout, assetCacheSize, itemsPerFlush);
   }
 
   //
@@ -113,6 +144,11 @@ public class Env implements Serializable {
     return folderWatch.get();
   }
 
+  // Scanned once, and shared by everything that reads resources in prod mode
+  public ResourceIndex resourceIndex() {
+    return resourceIndex.get();
+  }
+
   public File workingDir() {
     return workingDir;
   }
@@ -165,6 +201,25 @@ public class Env implements Serializable {
     return diskCache;
   }
 
+  public boolean fastEtag() {
+    return fastEtag;
+  }
+
+  // In milliseconds, 0 for no timeout
+  public int asyncTimeout() {
+    return asyncTimeout;
+  }
+
+  // In megabytes, 0 to read assets on each request. Only used in prod mode
+  public int assetCacheSize() {
+    return assetCacheSize;
+  }
+
+  // Number of items of a streamed json body written between two flushes
+  public int jsonFlushBatchSize() {
+    return jsonFlushBatchSize;
+  }
+
   private static String get(String propertyName) {
     String env = System.getenv(propertyName);
     return (env != null) ? env : System.getProperty(propertyName);
@@ -49,7 +49,7 @@ public class WebJarUrlFinder {
     }
   }
 
-  private static String minified(String path) {
+  public static String minified(String path) {
     return path.contains(".min.") ? path : path.replace(".js", ".min.js").replace(".css", ".min.css");
   }
 
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Async payloads are rendered and written on a bounded pool rather than on the
+// thread that completed their future. Deadlines are tracked by a single timer.
+// Publishers are drained on their own pool, so that slow clients of streams
+// can't starve async routes. Timed flushes of event streams get their own pool,
+// without a queue: a flush that can't start right away is skipped until the
+// next tick.
+class AsyncExecutors {
+  static final int COMPLETION_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+  static final int COMPLETION_QUEUE_SIZE = 4096;
+  static final int EVENT_STREAM_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  static final ThreadPoolExecutor COMPLETIONS = completions();
+  static final ThreadPoolExecutor PUBLISHER_DRAINS = publisherDrains();
+  static final ThreadPoolExecutor EVENT_STREAM_FLUSHES = eventStreamFlushes();
+  static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(daemon("async-timeout"));
+
+  private AsyncExecutors() {
+    // Static class
+  }
+
+  private static ThreadPoolExecutor completions() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(COMPLETION_THREADS, COMPLETION_THREADS, 60, SECONDS, new ArrayBlockingQueue<>(COMPLETION_QUEUE_SIZE), daemon("async-completion"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ThreadPoolExecutor publisherDrains() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(COMPLETION_THREADS, COMPLETION_THREADS, 60, SECONDS, new ArrayBlockingQueue<>(COMPLETION_QUEUE_SIZE), daemon("publisher-drain"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ThreadPoolExecutor eventStreamFlushes() {
+    return new ThreadPoolExecutor(0, EVENT_STREAM_THREADS, 60, SECONDS, new SynchronousQueue<>(), daemon("event-stream-flush"));
+  }
+
+  private static ThreadFactory daemon(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A satisfiable range of bytes, as requested with a Range header
+class ByteRange {
+  private static final String BYTES = "bytes=";
+  private static final int MAX_RANGES = 16;
+
+  final long start;
+  final long end;
+
+  ByteRange(long start, long end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  long length() {
+    return end - start + 1;
+  }
+
+  String contentRange(long totalLength) {
+    return "bytes " + start + "-" + end + "/" + totalLength;
+  }
+
+  // Null if the header should be ignored, empty if no range can be satisfied
+  static List<ByteRange> parse(String header, long totalLength) {
+    if ((header == null) || !header.regionMatches(true, 0, BYTES, 0, BYTES.length())) {
+      return null;
+    }
+
+    String[] specs = header.substring(BYTES.length()).split(",");
+    if (specs.length > MAX_RANGES) {
+      return null;
+    }
+
+    List<ByteRange> ranges = new ArrayList<>();
+    for (String spec : specs) {
+      spec = spec.trim();
+
+      int dash = spec.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+
+      try {
+        if (dash == 0) {
+          long suffixLength = Long.parseLong(spec.substring(1));
+          if ((suffixLength > 0) && (totalLength > 0)) {
+            ranges.add(new ByteRange(Math.max(0, totalLength - suffixLength), totalLength - 1));
+          }
+          continue;
+        }
+
+        long start = Long.parseLong(spec.substring(0, dash));
+        long end = (dash == spec.length() - 1) ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+        if ((start < 0) || (end < start)) {
+          return null;
+        }
+        if (start < totalLength) {
+          ranges.add(new ByteRange(start, Math.min(end, totalLength - 1)));
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+
+    return ranges;
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Gzipped variants of static contents, keyed by a hash of the content, or by
+// the path, last modified date and size of files, so that each variant is
+// compressed once, at the best level. Least recently used
+// variants are evicted past a total size.
+class CompressedVariants {
+  static final long MAX_SIZE = 32L * 1024 * 1024;
+
+  private final long maxSize;
+  private final Map<String, byte[]> variants;
+  private long size;
+
+  CompressedVariants(long maxSize) {
+    this.maxSize = maxSize;
+    this.variants = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  byte[] get(String key, DataSupplier data) throws IOException {
+    synchronized (this) {
+      byte[] compressed = variants.get(key);
+      if (compressed != null) {
+        return compressed;
+      }
+    }
+
+    byte[] compressed = gzip(data.get(), Deflater.BEST_COMPRESSION);
+    if (compressed.length <= maxSize) {
+      put(key, compressed);
+    }
+    return compressed;
+  }
+
+  private synchronized void put(String key, byte[] compressed) {
+    byte[] previous = variants.put(key, compressed);
+    size += compressed.length - ((previous == null) ? 0 : previous.length);
+
+    Iterator<byte[]> eldest = variants.values().iterator();
+    while (size > maxSize) {
+      size -= eldest.next().length;
+      eldest.remove();
+    }
+  }
+
+  static byte[] gzip(byte[] data, int level) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(32, data.length / 2));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(bytes) {
+      {
+        def.setLevel(level);
+      }
+    }) {
+      gzip.write(data);
+    }
+    return bytes.toByteArray();
+  }
+}
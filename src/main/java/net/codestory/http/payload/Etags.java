@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+import net.codestory.http.misc.Cache;
+import net.codestory.http.misc.Md5;
+
+// ETags of static resources that are not plain files, keyed by their path and
+// version, so that the content is hashed only once.
+class Etags {
+  private static final int MAX_ENTRIES = 10_000;
+
+  private final Cache<Key, String> etags = new Cache<>(Etags::hash).withMaxSize(MAX_ENTRIES);
+
+  String get(String path, long lastModified, long size, DataSupplier data) throws IOException {
+    Key key = new Key(path, lastModified, size, data);
+    try {
+      return etags.apply(key);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      // Cached keys must not retain the content
+      key.data = null;
+    }
+  }
+
+  private static String hash(Key key) {
+    try {
+      return Md5.of(key.data.get());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class Key {
+    final String path;
+    final long lastModified;
+    final long size;
+    DataSupplier data;
+
+    Key(String path, long lastModified, long size, DataSupplier data) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.size = size;
+      this.data = data;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return path.equals(other.path) && (lastModified == other.lastModified) && (size == other.size);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, size);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// The last events sent to an event stream, so that clients reconnecting with
+// a Last-Event-ID header can resume where they stopped. Events without an id
+// are given a sequential one.
+public class EventHistory {
+  private final ServerSentEvent[] events;
+  private long nextId;
+  private int start;
+  private int count;
+
+  public EventHistory(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity should be positive");
+    }
+    this.events = new ServerSentEvent[capacity];
+  }
+
+  public synchronized ServerSentEvent record(Object item) {
+    ServerSentEvent event = (item instanceof ServerSentEvent) ? (ServerSentEvent) item : ServerSentEvent.of(item);
+    if (event.id() == null) {
+      event = event.withId(Long.toString(nextId++));
+    }
+
+    if (count < events.length) {
+      events[(start + count++) % events.length] = event;
+    } else {
+      events[start] = event;
+      start = (start + 1) % events.length;
+    }
+    return event;
+  }
+
+  // Events recorded after the given id. Everything is replayed when the id is unknown
+  public synchronized List<ServerSentEvent> since(String lastEventId) {
+    int from = 0;
+    if (lastEventId != null) {
+      for (int i = count - 1; i >= 0; i--) {
+        if (lastEventId.equals(events[(start + i) % events.length].id())) {
+          from = i + 1;
+          break;
+        }
+      }
+    }
+
+    List<ServerSentEvent> replayed = new ArrayList<>(count - from);
+    for (int i = from; i < count; i++) {
+      replayed.add(events[(start + i) % events.length]);
+    }
+    return replayed;
+  }
+
+  // Missed events first, then live ones. Nothing is replayed to new clients
+  public Stream<?> resume(String lastEventId, Stream<?> live) {
+    if (lastEventId == null) {
+      return live;
+    }
+    return Stream.concat(since(lastEventId).stream(), live);
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import net.codestory.http.convert.TypeConvert;
+import net.codestory.http.websockets.BroadcastFrame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// Encodes events straight into a byte buffer that is flushed every few events,
+// or shortly after the last event when the source is slow. Idle streams get a
+// comment line from time to time, to keep proxies from closing the connection
+// and to detect clients that went away. Broadcast frames are copied as is,
+// since they are encoded once for all the subscribers.
+//
+// The shared timer never writes: timed flushes run on a separate executor,
+// at most one per stream, and give up if the stream is already being written
+// to. A stalled client thus only ever holds its own threads.
+class EventStreamWriter implements Closeable {
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "event-stream-timer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static final byte[] DATA = "data: ".getBytes(UTF_8);
+  private static final byte[] ID = "id: ".getBytes(UTF_8);
+  private static final byte[] EVENT = "event: ".getBytes(UTF_8);
+  private static final byte[] RETRY = "retry: ".getBytes(UTF_8);
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(UTF_8);
+
+  private final OutputStream output;
+  private final int batchSize;
+  private final long heartbeatDelay;
+  private final Executor flushExecutor;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final ScheduledFuture<?> timer;
+
+  private byte[] buffer = new byte[8192];
+  private int length;
+  private int pendingEvents;
+  private long lastFlush;
+  private volatile boolean closed;
+  private volatile Runnable onDisconnect = () -> {
+  };
+
+  EventStreamWriter(OutputStream output, int batchSize, long flushDelay, long heartbeatDelay) {
+    this(output, batchSize, flushDelay, heartbeatDelay, AsyncExecutors.EVENT_STREAM_FLUSHES);
+  }
+
+  EventStreamWriter(OutputStream output, int batchSize, long flushDelay, long heartbeatDelay, Executor flushExecutor) {
+    this.output = output;
+    this.batchSize = batchSize;
+    this.heartbeatDelay = heartbeatDelay;
+    this.flushExecutor = flushExecutor;
+    this.lastFlush = System.currentTimeMillis();
+
+    long period = Math.min(flushDelay, heartbeatDelay);
+    this.timer = TIMER.scheduleWithFixedDelay(this::tick, period, period, MILLISECONDS);
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  // Called once, on whichever thread notices the client went away, so that a
+  // source blocked waiting for its next item can be woken up
+  void onDisconnect(Runnable action) {
+    this.onDisconnect = action;
+  }
+
+  void write(Object item) {
+    lock.lock();
+    try {
+      writeEvent(item);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void writeEvent(Object item) {
+    if (closed) {
+      return;
+    }
+
+    if (item instanceof ServerSentEvent) {
+      ServerSentEvent event = (ServerSentEvent) item;
+      if (event.id() != null) {
+        field(ID, event.id().getBytes(UTF_8));
+      }
+      if (event.event() != null) {
+        field(EVENT, event.event().getBytes(UTF_8));
+      }
+      if (event.retry() >= 0) {
+        field(RETRY, Long.toString(event.retry()).getBytes(UTF_8));
+      }
+      if (event.data() != null) {
+        field(DATA, data(event.data()));
+      }
+    } else {
+      field(DATA, data(item));
+    }
+    append((byte) '\n');
+
+    if (++pendingEvents >= batchSize) {
+      flushBuffer();
+    }
+  }
+
+  // Runs on the timer
+  private void tick() {
+    if (closed || !flushScheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      flushExecutor.execute(this::timedFlush);
+    } catch (RejectedExecutionException e) {
+      flushScheduled.set(false);
+    }
+  }
+
+  private void timedFlush() {
+    try {
+      if (!lock.tryLock()) {
+        return;
+      }
+      try {
+        if (closed) {
+          return;
+        }
+
+        if (pendingEvents > 0) {
+          flushBuffer();
+        } else if ((System.currentTimeMillis() - lastFlush) >= heartbeatDelay) {
+          append(HEARTBEAT, 0, HEARTBEAT.length);
+          flushBuffer();
+        }
+      } finally {
+        lock.unlock();
+      }
+    } finally {
+      flushScheduled.set(false);
+    }
+  }
+
+  void flush() {
+    lock.lock();
+    try {
+      if (!closed && (length > 0)) {
+        flushBuffer();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flushBuffer() {
+    try {
+      output.write(buffer, 0, length);
+      output.flush();
+    } catch (IOException e) {
+      closed = true;
+      onDisconnect.run();
+    }
+
+    length = 0;
+    pendingEvents = 0;
+    lastFlush = System.currentTimeMillis();
+  }
+
+  @Override
+  public void close() {
+    timer.cancel(false);
+    lock.lock();
+    try {
+      if (!closed && (length > 0)) {
+        flushBuffer();
+      }
+      closed = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static ByteBuffer data(Object item) {
+    if (item instanceof BroadcastFrame) {
+      return ((BroadcastFrame) item).buffer();
+    }
+    return ByteBuffer.wrap((item instanceof String) ? ((String) item).getBytes(UTF_8) : TypeConvert.toByteArray(item));
+  }
+
+  private void field(byte[] name, byte[] value) {
+    field(name, ByteBuffer.wrap(value));
+  }
+
+  // Multi-line values are written as one field per line, lines being separated
+  // by \r\n, \n or a lone \r. Neither byte is ever part of a multi-byte UTF-8
+  // sequence, so the value can be scanned as is
+  private void field(byte[] name, ByteBuffer value) {
+    int from = value.position();
+    int end = value.limit();
+    for (int i = from; i < end; i++) {
+      byte current = value.get(i);
+      if ((current == '\n') || (current == '\r')) {
+        line(name, value, from, i);
+        if ((current == '\r') && ((i + 1) < end) && (value.get(i + 1) == '\n')) {
+          i++;
+        }
+        from = i + 1;
+      }
+    }
+    line(name, value, from, end);
+  }
+
+  private void line(byte[] name, ByteBuffer value, int from, int to) {
+    append(name, 0, name.length);
+    ensureCapacity(to - from);
+    ByteBuffer slice = value.duplicate();
+    slice.position(from);
+    slice.get(buffer, length, to - from);
+    length += to - from;
+    append((byte) '\n');
+  }
+
+  private void append(byte[] bytes, int offset, int count) {
+    ensureCapacity(count);
+    System.arraycopy(bytes, offset, buffer, length, count);
+    length += count;
+  }
+
+  private void append(byte value) {
+    ensureCapacity(1);
+    buffer[length++] = value;
+  }
+
+  private void ensureCapacity(int count) {
+    if ((length + count) > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+    }
+  }
+}
@@ -30,6 +30,8 @@ public class Payload {
   private final Map<String, String> headers;
   private final List<Cookie> cookies;
   private int code;
+  private boolean jsonStreaming;
+  private int timeout;
 
   public Payload(Object content) {
     this(null, content);
@@ -51,6 +53,8 @@ public class Payload {
       this.code = wrapped.code;
       this.headers = new LinkedHashMap<>(wrapped.headers);
       this.cookies = new ArrayList<>(wrapped.cookies);
+      this.jsonStreaming = wrapped.jsonStreaming;
+      this.timeout = wrapped.timeout;
       return;
     }
 
@@ -144,6 +148,18 @@ public class Payload {
     return this;
   }
 
+  // Serialize json directly to the response, without ETag nor Content-Length
+  public Payload withJsonStreaming() {
+    this.jsonStreaming = true;
+    return this;
+  }
+
+  // Deadline for async contents, in milliseconds
+  public Payload withTimeout(int timeoutInMillis) {
+    this.timeout = timeoutInMillis;
+    return this;
+  }
+
   public String rawContentType() {
     return contentType;
   }
@@ -164,10 +180,18 @@ public class Payload {
     return code;
   }
 
+  public int timeout() {
+    return timeout;
+  }
+
   public boolean isSuccess() {
     return (code >= OK) && (code <= SUCCESS_UPPER_CODE);
   }
 
+  public boolean isJsonStreaming() {
+    return jsonStreaming;
+  }
+
   public boolean isError() {
     return (code >= BAD_REQUEST) && (code <= ERROR_UPPER_CODE);
   }
@@ -15,24 +15,34 @@
  */
 package net.codestory.http.payload;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static net.codestory.http.constants.Encodings.GZIP;
 import static net.codestory.http.constants.Headers.ACCEPT_ENCODING;
+import static net.codestory.http.constants.Headers.ACCEPT_RANGES;
 import static net.codestory.http.constants.Headers.CACHE_CONTROL;
 import static net.codestory.http.constants.Headers.CONNECTION;
 import static net.codestory.http.constants.Headers.CONTENT_ENCODING;
+import static net.codestory.http.constants.Headers.CONTENT_RANGE;
 import static net.codestory.http.constants.Headers.CONTENT_TYPE;
 import static net.codestory.http.constants.Headers.ETAG;
 import static net.codestory.http.constants.Headers.IF_MODIFIED_SINCE;
 import static net.codestory.http.constants.Headers.IF_NONE_MATCH;
+import static net.codestory.http.constants.Headers.IF_RANGE;
 import static net.codestory.http.constants.Headers.LAST_MODIFIED;
+import static net.codestory.http.constants.Headers.RANGE;
 import static net.codestory.http.constants.HttpStatus.CONTINUE;
+import static net.codestory.http.constants.HttpStatus.GATEWAY_TIMEOUT;
 import static net.codestory.http.constants.HttpStatus.INTERNAL_SERVER_ERROR;
 import static net.codestory.http.constants.HttpStatus.NOT_FOUND;
 import static net.codestory.http.constants.HttpStatus.NOT_MODIFIED;
 import static net.codestory.http.constants.HttpStatus.NO_CONTENT;
 import static net.codestory.http.constants.HttpStatus.OK;
+import static net.codestory.http.constants.HttpStatus.PARTIAL_CONTENT;
+import static net.codestory.http.constants.HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+import static net.codestory.http.constants.HttpStatus.SERVICE_UNAVAILABLE;
 import static net.codestory.http.constants.Methods.HEAD;
 import static net.codestory.http.io.Strings.stripQuotes;
 
@@ -42,14 +52,30 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import net.codestory.http.Request;
 import net.codestory.http.Response;
 import net.codestory.http.compilers.CacheEntry;
@@ -60,9 +86,11 @@ import net.codestory.http.convert.TypeConvert;
 import net.codestory.http.errors.ErrorPage;
 import net.codestory.http.errors.ErrorPayload;
 import net.codestory.http.errors.HttpException;
+import net.codestory.http.io.AssetCache;
 import net.codestory.http.io.InputStreams;
 import net.codestory.http.io.Resources;
 import net.codestory.http.logs.Logs;
+import net.codestory.http.misc.Crc32;
 import net.codestory.http.misc.Dates;
 import net.codestory.http.misc.Env;
 import net.codestory.http.misc.Md5;
@@ -72,6 +100,12 @@ import net.codestory.http.templating.Site;
 import net.codestory.http.types.ContentTypes;
 
 public class PayloadWriter {
+  private static final Random RANDOM = new Random();
+  static final String NDJSON = "application/x-ndjson";
+  private static final long MAX_COMPRESSED_FILE_SIZE = 1024 * 1024;
+  private static final Etags ETAGS = new Etags();
+  private static final CompressedVariants COMPRESSED_VARIANTS = new CompressedVariants(CompressedVariants.MAX_SIZE);
+
   protected final Request request;
   protected final Response response;
   protected final Env env;
@@ -79,6 +113,8 @@ public class PayloadWriter {
   protected final Resources resources;
   protected final CompilerFacade compilers;
 
+  private boolean closeOnCompletion;
+
   public PayloadWriter(Request request, Response response, Env env, Site site, Resources resources, CompilerFacade compilers) {
     this.request = request;
     this.response = response;
@@ -103,23 +139,61 @@ public class PayloadWriter {
           .withCookies(payload.cookies());
     }
 
+    // Publishers close the response once they complete
     write(payload);
-    close();
+    if (!closeOnCompletion) {
+      close();
+    }
   }
 
+  // The payload is written on the completion executor, either once the future
+  // completes, or with a 504 once the deadline is reached. The deadline timer
+  // only completes the outcome, it never writes. A 503 is sent when the
+  // executor is saturated
   protected CompletableFuture<Void> writeAndCloseAsync(Payload payload) {
     CompletableFuture<?> future = (CompletableFuture<?>) payload.rawContent();
+    CompletableFuture<Object> outcome = new CompletableFuture<>();
+    CompletableFuture<Void> written = new CompletableFuture<>();
 
-    return future.thenAccept(content -> {
+    future.whenComplete((content, error) -> {
+      if (error != null) {
+        outcome.completeExceptionally(error);
+      } else {
+        outcome.complete(content);
+      }
+    });
+
+    int timeout = (payload.timeout() > 0) ? payload.timeout() : env.asyncTimeout();
+    if (timeout > 0) {
+      ScheduledFuture<?> deadline = AsyncExecutors.TIMEOUTS.schedule(() -> outcome.completeExceptionally(new HttpException(GATEWAY_TIMEOUT)), timeout, MILLISECONDS);
+      outcome.whenComplete((content, error) -> deadline.cancel(false));
+    }
+
+    outcome.whenComplete((content, error) -> {
       try {
-        writeAndCloseSync(new Payload(content));
-      } catch (Exception e) {
-        writeErrorPage(e);
+        completionExecutor().execute(() -> {
+          if (error != null) {
+            writeErrorPage(((error instanceof CompletionException) && (error.getCause() != null)) ? error.getCause() : error);
+          } else {
+            try {
+              writeAndCloseSync(new Payload(content));
+            } catch (Exception e) {
+              writeErrorPage(e);
+            }
+          }
+          written.complete(null);
+        });
+      } catch (RejectedExecutionException e) {
+        // Not on the thread that completed the outcome, that may be the timer
+        CompletableFuture.runAsync(() -> writeErrorPage(new HttpException(SERVICE_UNAVAILABLE))).whenComplete((result, failure) -> written.complete(null));
       }
-    }).exceptionally(e -> {
-      writeErrorPage(e);
-      return null;
     });
+
+    return written;
+  }
+
+  protected Executor completionExecutor() {
+    return AsyncExecutors.COMPLETIONS;
   }
 
   protected boolean isAsync(Payload payload) {
@@ -152,6 +226,15 @@ public class PayloadWriter {
     }
   }
 
+  // Drops the connection instead of ending the body
+  protected void abort() {
+    org.simpleframework.http.Request simpleRequest = request.unwrap(org.simpleframework.http.Request.class);
+    if (simpleRequest != null) {
+      simpleRequest.getChannel().close();
+    }
+    close();
+  }
+
   protected void write(Payload payload) throws IOException {
     response.setHeaders(payload.headers());
     response.setCookies(payload.cookies());
@@ -186,19 +269,252 @@ public class PayloadWriter {
       return;
     }
 
+    if (Publishers.isPublisher(content)) {
+      writePublisher(content, contentTypeHeader);
+      return;
+    }
+
+    if (isJsonItems(content, contentTypeHeader)) {
+      writeJsonItems(content, contentTypeHeader.startsWith(NDJSON));
+      return;
+    }
+
     if (isStream(content)) {
       streamPayload(uri, payload);
+      return;
+    }
+
+    if (payload.isJsonStreaming() && isJson(content)) {
+      writeStreamingOutput(output -> TypeConvert.writeJson(content, output));
+      return;
+    }
+
+    if (content instanceof AssetCache.Asset) {
+      writeAsset(payload, (AssetCache.Asset) content, contentTypeHeader);
+      return;
+    }
+
+    Path assetPath = getAssetPath(content);
+    if ((assetPath != null) && (code == OK) && !payload.headers().containsKey(ETAG) && (request.header(RANGE) == null)) {
+      AssetCache.Asset asset = resources.cachedAsset(assetPath);
+      if (asset != null) {
+        writeAsset(payload, asset, contentTypeHeader);
+        return;
+      }
+    }
+
+    File file = getFile(content);
+    if (file != null) {
+      writeFile(payload, file, contentTypeHeader);
     } else {
       writeBytes(uri, payload);
     }
   }
 
+  protected void writeAsset(Payload payload, AssetCache.Asset asset, String contentType) throws IOException {
+    String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
+    if (asset.etag().equals(previousEtag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, asset.etag());
+
+    boolean supportsRanges = payload.code() == OK;
+    if (supportsRanges) {
+      response.setHeader(ACCEPT_RANGES, "bytes");
+    }
+
+    try {
+      List<ByteRange> ranges = supportsRanges ? requestedRanges(asset.etag(), asset.lastModified(), asset.length()) : null;
+      if (ranges != null) {
+        writeRanges(asset.length(), ranges, contentType, (start, length, target) -> write(slice(asset.buffer(), start, length), target));
+        return;
+      }
+
+      ByteBuffer data = asset.buffer();
+      if (shouldGzip()) {
+        data = asset.gzipped();
+        response.setHeader(CONTENT_ENCODING, GZIP);
+      }
+      response.setContentLength(data.remaining());
+      write(data, response.channel());
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  // Files are sent from their channel, without being loaded in memory
+  protected void writeFile(Payload payload, File file, String contentType) throws IOException {
+    String etag = payload.headers().get(ETAG);
+    if (etag == null) {
+      etag = etag(file);
+    }
+
+    String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
+    if (etag.equals(previousEtag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, etag);
+
+    boolean supportsRanges = payload.code() == OK;
+    if (supportsRanges) {
+      response.setHeader(ACCEPT_RANGES, "bytes");
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+
+      List<ByteRange> ranges = supportsRanges ? requestedRanges(etag, file.lastModified(), size) : null;
+      if (ranges != null) {
+        writeRanges(size, ranges, contentType, (start, length, target) -> transfer(channel, start, length, target));
+      } else if (shouldGzip()) {
+        writeCompressedFile(file, channel, size);
+      } else {
+        response.setContentLength(size);
+        transfer(channel, 0, size, response.channel());
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  // In prod mode, prefer a precompressed sibling file. Then a cached variant for
+  // small enough files, keyed by the file's version rather than by its ETag,
+  // which the payload may have set to anything
+  protected void writeCompressedFile(File file, FileChannel channel, long size) throws IOException {
+    long lastModified = file.lastModified();
+
+    File precompressed = new File(file.getPath() + ".gz");
+    if (env.prodMode() && precompressed.isFile() && (precompressed.lastModified() >= lastModified)) {
+      try (FileChannel compressedChannel = FileChannel.open(precompressed.toPath(), StandardOpenOption.READ)) {
+        long compressedSize = compressedChannel.size();
+
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        response.setContentLength(compressedSize);
+        transfer(compressedChannel, 0, compressedSize, response.channel());
+      }
+      return;
+    }
+
+    if (size > MAX_COMPRESSED_FILE_SIZE) {
+      writeStreamingOutput(output -> InputStreams.copy(Channels.newInputStream(channel), output));
+      return;
+    }
+
+    byte[] compressed = COMPRESSED_VARIANTS.get(file.getAbsolutePath() + ':' + lastModified + ':' + size, () -> read(channel, size));
+
+    response.setHeader(CONTENT_ENCODING, GZIP);
+    response.setContentLength(compressed.length);
+    response.outputStream().write(compressed);
+  }
+
+  private static byte[] read(FileChannel channel, long size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining() && (channel.read(buffer, buffer.position()) > 0)) {
+      // Read until the end
+    }
+    return (buffer.position() == size) ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  private List<ByteRange> requestedRanges(String etag, long lastModified, long size) {
+    String ifRange = request.header(IF_RANGE);
+    if ((ifRange != null) && !ifRange.equals(etag) && !stripQuotes(ifRange).equals(etag) && !((lastModified > 0) && ifRange.equals(Dates.toRfc1123(lastModified)))) {
+      return null;
+    }
+
+    return ByteRange.parse(request.header(RANGE), size);
+  }
+
+  // Ranges are sent from a file's channel or from an in-memory asset
+  private interface Slices {
+    void write(long start, long length, WritableByteChannel target) throws IOException;
+  }
+
+  private void writeRanges(long size, List<ByteRange> ranges, String contentType, Slices slices) throws IOException {
+    if (ranges.isEmpty()) {
+      response.setStatus(REQUESTED_RANGE_NOT_SATISFIABLE);
+      response.setHeader(CONTENT_RANGE, "bytes */" + size);
+      response.setContentLength(0);
+    } else if (ranges.size() == 1) {
+      ByteRange range = ranges.get(0);
+
+      response.setStatus(PARTIAL_CONTENT);
+      response.setHeader(CONTENT_RANGE, range.contentRange(size));
+      response.setContentLength(range.length());
+      slices.write(range.start, range.length(), response.channel());
+    } else {
+      writeMultipleRanges(size, ranges, contentType, slices);
+    }
+  }
+
+  private void writeMultipleRanges(long size, List<ByteRange> ranges, String contentType, Slices slices) throws IOException {
+    String boundary = Long.toHexString(RANDOM.nextLong()) + Long.toHexString(RANDOM.nextLong());
+
+    byte[][] partHeaders = new byte[ranges.size()][];
+    long contentLength = 0;
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      partHeaders[i] = ("\r\n--" + boundary + "\r\n" + CONTENT_TYPE + ": " + contentType + "\r\n" + CONTENT_RANGE + ": " + range.contentRange(size) + "\r\n\r\n").getBytes(US_ASCII);
+      contentLength += partHeaders[i].length + range.length();
+    }
+    byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+    contentLength += end.length;
+
+    response.setStatus(PARTIAL_CONTENT);
+    response.setHeader(CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+    response.setContentLength(contentLength);
+
+    WritableByteChannel target = response.channel();
+    for (int i = 0; i < ranges.size(); i++) {
+      ByteRange range = ranges.get(i);
+      write(ByteBuffer.wrap(partHeaders[i]), target);
+      slices.write(range.start, range.length(), target);
+    }
+    write(ByteBuffer.wrap(end), target);
+  }
+
+  protected static void transfer(FileChannel channel, long position, long count, WritableByteChannel target) throws IOException {
+    long end = position + count;
+    while (position < end) {
+      long transferred = channel.transferTo(position, end - position, target);
+      if (transferred <= 0) {
+        break; // Truncated file
+      }
+      position += transferred;
+    }
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, long start, long length) {
+    ByteBuffer slice = buffer.duplicate();
+    slice.position((int) start);
+    slice.limit((int) (start + length));
+    return slice;
+  }
+
+  protected static void write(ByteBuffer buffer, WritableByteChannel target) throws IOException {
+    while (buffer.hasRemaining()) {
+      target.write(buffer);
+    }
+  }
+
   protected void writeBytes(String uri, Payload payload) throws IOException {
+    CacheEntry cacheEntry = getCacheEntry(payload.rawContent());
+    if (cacheEntry != null) {
+      writeCacheEntry(payload, cacheEntry);
+      return;
+    }
+
     DataSupplier lazyData = DataSupplier.cache(() -> getData(payload.rawContent(), uri));
 
     String etag = payload.headers().get(ETAG);
-    if (etag == null) {
-      etag = etag(lazyData.get());
+    boolean etagIsContentHash = (etag == null);
+    if (etagIsContentHash) {
+      etag = etag(payload.rawContent(), lazyData);
     }
 
     String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
@@ -209,7 +525,116 @@ public class PayloadWriter {
     response.setHeader(ETAG, etag);
 
     byte[] data = lazyData.get();
-    write(data);
+    if (etagIsContentHash && isStaticContent(payload.rawContent())) {
+      write(data, etag);
+    } else {
+      write(data);
+    }
+  }
+
+  // Cached and compiled contents are written from their buffer, that might be
+  // off-heap, without being copied to a byte array
+  protected void writeCacheEntry(Payload payload, CacheEntry cacheEntry) throws IOException {
+    String etag = payload.headers().get(ETAG);
+    if (etag == null) {
+      etag = cacheEntry.etag();
+    }
+
+    String previousEtag = stripQuotes(request.header(IF_NONE_MATCH));
+    if (etag.equals(previousEtag)) {
+      response.setStatus(NOT_MODIFIED);
+      return;
+    }
+    response.setHeader(ETAG, etag);
+
+    try {
+      if (shouldGzip()) {
+        byte[] compressed = COMPRESSED_VARIANTS.get(cacheEntry.etag(), cacheEntry::toBytes);
+
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        response.setContentLength(compressed.length);
+        response.outputStream().write(compressed);
+      } else {
+        ByteBuffer buffer = cacheEntry.buffer();
+
+        response.setContentLength(buffer.remaining());
+        write(buffer, response.channel());
+      }
+    } catch (IOException e) {
+      if (!shouldIgnoreError(e)) {
+        throw e;
+      }
+    }
+  }
+
+  protected CacheEntry getCacheEntry(Object content) {
+    if (content instanceof CacheEntry) {
+      return (CacheEntry) content;
+    }
+    if ((content instanceof SourceFile) && !supportsTemplating(((SourceFile) content).getPath())) {
+      return compilers.compile((SourceFile) content);
+    }
+    return null;
+  }
+
+  protected boolean isStaticContent(Object content) {
+    return (content instanceof File) || (content instanceof Path) || (content instanceof SourceFile) || (content instanceof URL) || (content instanceof CacheEntry);
+  }
+
+  // Items are serialized one by one, either as a json array or as newline delimited json
+  protected void writeJsonItems(Object content, boolean ndjson) throws IOException {
+    Stream<?> stream = (content instanceof Stream<?>) ? (Stream<?>) content : null;
+    Iterator<?> items = (stream != null) ? stream.iterator() : (content instanceof Iterable<?>) ? ((Iterable<?>) content).iterator() : (Iterator<?>) content;
+
+    try {
+      writeStreamingOutput(output -> {
+        JsonGenerator generator = TypeConvert.jsonGenerator(output);
+        if (!ndjson) {
+          generator.writeStartArray();
+        }
+
+        int flushBatchSize = flushBatchSize();
+        int count = 0;
+        while (items.hasNext()) {
+          TypeConvert.writeJson(items.next(), generator);
+          if (ndjson) {
+            generator.writeRaw('\n');
+          }
+          if (++count % flushBatchSize == 0) {
+            generator.flush();
+          }
+        }
+
+        if (!ndjson) {
+          generator.writeEndArray();
+        }
+        generator.close();
+      });
+    } finally {
+      if (stream != null) {
+        stream.close();
+      }
+    }
+  }
+
+  // The response is closed once the publisher completes
+  protected void writePublisher(Object publisher, String contentType) throws IOException {
+    writeStreamingHeaders();
+
+    closeOnCompletion = true;
+    PublisherWriter.subscribe(publisher, response.outputStream(), contentType, requestBatchSize(), heartbeatDelay(), publisherExecutor(), this::close, this::abort);
+  }
+
+  protected Executor publisherExecutor() {
+    return AsyncExecutors.PUBLISHER_DRAINS;
+  }
+
+  protected int requestBatchSize() {
+    return 16;
+  }
+
+  protected int flushBatchSize() {
+    return Math.max(1, env.jsonFlushBatchSize());
   }
 
   protected void writeStreamingHeaders() throws IOException {
@@ -232,22 +657,29 @@ public class PayloadWriter {
   }
 
   protected void writeEventStream(Payload payload) throws IOException {
-    PrintStream printStream = new PrintStream(response.outputStream());
+    try (Stream<?> stream = (Stream<?>) payload.rawContent();
+         EventStreamWriter events = new EventStreamWriter(response.outputStream(), eventBatchSize(), eventFlushDelay(), heartbeatDelay())) {
+      events.onDisconnect(stream::close);
 
-    try (Stream<?> stream = (Stream<?>) payload.rawContent()) {
-      stream.map(item -> {
-        String jsonOrPlainString = (item instanceof String) ? (String) item : TypeConvert.toJson(item);
-
-        printStream
-            .append("data: ")
-            .append(jsonOrPlainString.replaceAll("[\n]", "\ndata: "))
-            .append("\n\n");
-        return printStream.checkError();
-      }).filter(ioExceptionHasOccurred -> ioExceptionHasOccurred)
-        .findFirst();
+      Iterator<?> items = stream.iterator();
+      while (!events.isClosed() && items.hasNext()) {
+        events.write(items.next());
+      }
     }
   }
 
+  protected int eventBatchSize() {
+    return 16;
+  }
+
+  protected long eventFlushDelay() {
+    return 50;
+  }
+
+  protected long heartbeatDelay() {
+    return 15000;
+  }
+
   protected void writeBufferedReader(Payload payload) throws IOException {
     BufferedReader lines = (BufferedReader) payload.rawContent();
 
@@ -278,7 +710,8 @@ public class PayloadWriter {
       if (shouldGzip()) {
         response.setHeader(CONTENT_ENCODING, GZIP);
 
-        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream());
+        // Flushes go through to the client, so that streamed bodies are delivered incrementally
+        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream(), true);
         stream.write(gzip);
         gzip.finish();
       } else {
@@ -292,13 +725,18 @@ public class PayloadWriter {
   }
 
   protected void write(byte[] data) throws IOException {
+    write(data, null);
+  }
+
+  // Compressed variants of static contents are cached with their content hash as a key
+  protected void write(byte[] data, String contentHash) throws IOException {
     try {
       if (shouldGzip()) {
-        response.setHeader(CONTENT_ENCODING, GZIP);
+        byte[] compressed = (contentHash == null) ? CompressedVariants.gzip(data, Deflater.DEFAULT_COMPRESSION) : COMPRESSED_VARIANTS.get(contentHash, () -> data);
 
-        GZIPOutputStream gzip = new GZIPOutputStream(response.outputStream());
-        gzip.write(data);
-        gzip.finish();
+        response.setHeader(CONTENT_ENCODING, GZIP);
+        response.setContentLength(compressed.length);
+        response.outputStream().write(compressed);
       } else {
         response.setContentLength(data.length);
         response.outputStream().write(data);
@@ -325,10 +763,49 @@ public class PayloadWriter {
     return false;
   }
 
+  // Static contents hash their data only once
+  private String etag(Object content, DataSupplier data) throws IOException {
+    if (content instanceof CacheEntry) {
+      return ((CacheEntry) content).etag();
+    }
+    if ((content instanceof SourceFile) && !supportsTemplating(((SourceFile) content).getPath())) {
+      return compilers.compile((SourceFile) content).etag();
+    }
+
+    Path path = (content instanceof File) ? ((File) content).toPath() : (content instanceof Path) ? (Path) content : null;
+    if ((path != null) && !supportsTemplating(path)) {
+      return ETAGS.get(Resources.toUnixString(path), resources.lastModified(path), resources.size(path), data);
+    }
+
+    if (env.fastEtag() && !isStaticContent(content)) {
+      return Crc32.of(data.get());
+    }
+    return etag(data.get());
+  }
+
   protected String etag(byte[] data) {
     return Md5.of(data);
   }
 
+  protected String etag(File file) {
+    return Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length());
+  }
+
+  protected boolean isJson(Object content) {
+    return !(content instanceof File) && !(content instanceof Path) && !(content instanceof SourceFile) && !(content instanceof URL) && !(content instanceof byte[])
+      && !(content instanceof AssetCache.Asset) && !(content instanceof String) && !(content instanceof CacheEntry) && !(content instanceof ModelAndView) && !(content instanceof Model);
+  }
+
+  protected boolean isJsonItems(Object content, String contentType) {
+    if (contentType.startsWith(NDJSON)) {
+      return (content instanceof Iterator<?>) || ((content instanceof Iterable<?>) && !(content instanceof Path)) || (content instanceof Stream<?>);
+    }
+    if (contentType.startsWith("application/json")) {
+      return (content instanceof Iterator<?>) || (content instanceof Stream<?>);
+    }
+    return false;
+  }
+
   protected boolean isStream(Object content) {
     return (content instanceof Stream<?>) || (content instanceof BufferedReader) || (content instanceof InputStream) || (content instanceof StreamingOutput);
   }
@@ -349,6 +826,9 @@ public class PayloadWriter {
     if (content instanceof URL) {
       return ContentTypes.get(((URL) content).getFile());
     }
+    if (content instanceof AssetCache.Asset) {
+      return ContentTypes.get(uri);
+    }
     if ((content instanceof String) || (content instanceof CacheEntry)) {
       return "text/html;charset=UTF-8";
     }
@@ -358,7 +838,7 @@ public class PayloadWriter {
     if ((content instanceof byte[]) || (content instanceof InputStream) || (content instanceof StreamingOutput)) {
       return "application/octet-stream";
     }
-    if (content instanceof Stream<?>) {
+    if ((content instanceof Stream<?>) || Publishers.isPublisher(content)) {
       return "text/event-stream;charset=UTF-8";
     }
     if (content instanceof ModelAndView) {
@@ -374,6 +854,28 @@ public class PayloadWriter {
     return "application/json;charset=UTF-8";
   }
 
+  // Static resources of the app folder, that are not templates
+  protected Path getAssetPath(Object content) {
+    Path path = (content instanceof Path) ? (Path) content : ((content instanceof File) && !((File) content).isAbsolute()) ? ((File) content).toPath() : null;
+    return ((path == null) || supportsTemplating(path)) ? null : path;
+  }
+
+  protected File getFile(Object content) {
+    Path path;
+    if ((content instanceof File) && ((File) content).isAbsolute()) {
+      File file = (File) content;
+      return file.isFile() ? file : null;
+    } else if (content instanceof File) {
+      path = ((File) content).toPath();
+    } else if (content instanceof Path) {
+      path = (Path) content;
+    } else {
+      return null;
+    }
+
+    return supportsTemplating(path) ? null : resources.existingFile(path);
+  }
+
   protected byte[] getData(Object content, String uri) throws IOException {
     if (content == null) {
       return null;
@@ -420,6 +922,9 @@ public class PayloadWriter {
     }
 
     Object content = payload.rawContent();
+    if ((content instanceof File) && ((File) content).isAbsolute()) {
+      return ((File) content).lastModified();
+    }
     if (content instanceof File) {
       return resources.lastModified(((File) content).toPath());
     }
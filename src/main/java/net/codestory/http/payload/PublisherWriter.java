@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import net.codestory.http.convert.TypeConvert;
+import net.codestory.http.logs.Logs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+// Writes the items of a Publisher a batch at a time. The next batch is only
+// requested once the previous one was written and flushed to the client, so a
+// slow client slows the producer down and at most one batch is held in memory.
+// Items are written on the executor, never on the producer's thread. When the
+// publisher fails, the body is left unfinished and the response is aborted, so
+// that a client can't mistake a failed stream for a complete one.
+class PublisherWriter implements Subscriber<Object> {
+  private final Encoder encoder;
+  private final int batchSize;
+  private final Executor executor;
+  private final Runnable onEnd;
+  private final Runnable onAbort;
+  private final Queue<Object> items = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger wip = new AtomicInteger();
+
+  private volatile Subscription subscription;
+  private volatile boolean done;
+  private volatile Throwable error;
+  private boolean cancelled;
+  private int outstanding;
+
+  private PublisherWriter(Encoder encoder, int batchSize, Executor executor, Runnable onEnd, Runnable onAbort) {
+    this.encoder = encoder;
+    this.batchSize = batchSize;
+    this.executor = executor;
+    this.onEnd = onEnd;
+    this.onAbort = onAbort;
+  }
+
+  static boolean isPublisher(Object content) {
+    return content instanceof Publisher<?>;
+  }
+
+  @SuppressWarnings("unchecked")
+  static void subscribe(Object publisher, OutputStream output, String contentType, int batchSize, long heartbeatDelay, Executor executor, Runnable onEnd, Runnable onAbort) throws IOException {
+    ((Publisher<Object>) publisher).subscribe(new PublisherWriter(encoder(output, contentType, heartbeatDelay), batchSize, executor, onEnd, onAbort));
+  }
+
+  @Override
+  public void onSubscribe(Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+
+    this.subscription = subscription;
+    this.outstanding = batchSize;
+    subscription.request(batchSize);
+  }
+
+  @Override
+  public void onNext(Object item) {
+    items.offer(item);
+    schedule();
+  }
+
+  @Override
+  public void onError(Throwable error) {
+    this.error = error;
+    this.done = true;
+    schedule();
+  }
+
+  @Override
+  public void onComplete() {
+    this.done = true;
+    schedule();
+  }
+
+  private void schedule() {
+    if (wip.getAndIncrement() == 0) {
+      try {
+        executor.execute(this::drain);
+      } catch (RejectedExecutionException e) {
+        cancel();
+        end();
+      }
+    }
+  }
+
+  // Only one drain runs at a time
+  private void drain() {
+    int missed = 1;
+    do {
+      if (!cancelled) {
+        try {
+          int written = 0;
+          Object item;
+          while ((item = items.poll()) != null) {
+            encoder.write(item);
+            written++;
+          }
+
+          if (written > 0) {
+            encoder.flush();
+
+            outstanding -= written;
+            if ((outstanding <= 0) && !done) {
+              outstanding = batchSize;
+              subscription.request(batchSize);
+            }
+          }
+
+          if (done && items.isEmpty()) {
+            if (error != null) {
+              Logs.unexpectedError(error);
+              abort();
+            } else {
+              end();
+            }
+          }
+        } catch (IOException e) {
+          cancel();
+          end();
+        }
+      }
+
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void cancel() {
+    cancelled = true;
+    items.clear();
+    subscription.cancel();
+  }
+
+  private void end() {
+    cancelled = true;
+    try {
+      encoder.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+    onEnd.run();
+  }
+
+  private void abort() {
+    cancelled = true;
+    try {
+      encoder.abort();
+    } catch (IOException e) {
+      // Ignore
+    }
+    onAbort.run();
+  }
+
+  private static Encoder encoder(OutputStream output, String contentType, long heartbeatDelay) throws IOException {
+    if (contentType.startsWith(PayloadWriter.NDJSON)) {
+      return new JsonEncoder(TypeConvert.jsonGenerator(output), true);
+    }
+    if (contentType.startsWith("application/json")) {
+      return new JsonEncoder(TypeConvert.jsonGenerator(output), false);
+    }
+    return new EventEncoder(new EventStreamWriter(output, Integer.MAX_VALUE, heartbeatDelay, heartbeatDelay));
+  }
+
+  private interface Encoder {
+    void write(Object item) throws IOException;
+
+    void flush() throws IOException;
+
+    void close() throws IOException;
+
+    // Stops without ending the body
+    void abort() throws IOException;
+  }
+
+  private static class JsonEncoder implements Encoder {
+    private final JsonGenerator generator;
+    private final boolean ndjson;
+
+    JsonEncoder(JsonGenerator generator, boolean ndjson) throws IOException {
+      this.generator = generator;
+      this.ndjson = ndjson;
+      if (!ndjson) {
+        generator.writeStartArray();
+      }
+    }
+
+    @Override
+    public void write(Object item) throws IOException {
+      TypeConvert.writeJson(item, generator);
+      if (ndjson) {
+        generator.writeRaw('\n');
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!ndjson) {
+        generator.writeEndArray();
+      }
+      generator.close();
+    }
+
+    @Override
+    public void abort() throws IOException {
+      generator.flush();
+    }
+  }
+
+  private static class EventEncoder implements Encoder {
+    private final EventStreamWriter events;
+
+    EventEncoder(EventStreamWriter events) {
+      this.events = events;
+    }
+
+    @Override
+    public void write(Object item) {
+      events.write(item);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      events.flush();
+      if (events.isClosed()) {
+        throw new IOException("Connection closed");
+      }
+    }
+
+    @Override
+    public void close() {
+      events.close();
+    }
+
+    @Override
+    public void abort() {
+      events.close();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+// Reactive Streams is an optional dependency. Classes that refer to it are
+// only loaded when it's on the classpath.
+class Publishers {
+  private static final boolean AVAILABLE = isAvailable();
+
+  private Publishers() {
+    // Static class
+  }
+
+  static boolean isPublisher(Object content) {
+    return AVAILABLE && PublisherWriter.isPublisher(content);
+  }
+
+  private static boolean isAvailable() {
+    try {
+      Class.forName("org.reactivestreams.Publisher", false, Publishers.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+}
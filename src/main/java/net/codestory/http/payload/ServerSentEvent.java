@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+// An event of a text/event-stream with an optional id, name and reconnection delay.
+// Other items of a stream are sent as data only events.
+public class ServerSentEvent {
+  private final String id;
+  private final String event;
+  private final long retry;
+  private final Object data;
+
+  private ServerSentEvent(String id, String event, long retry, Object data) {
+    this.id = id;
+    this.event = event;
+    this.retry = retry;
+    this.data = data;
+  }
+
+  public static ServerSentEvent of(Object data) {
+    return new ServerSentEvent(null, null, -1, data);
+  }
+
+  public ServerSentEvent withId(String id) {
+    return new ServerSentEvent(id, event, retry, data);
+  }
+
+  public ServerSentEvent withEvent(String event) {
+    return new ServerSentEvent(id, event, retry, data);
+  }
+
+  public ServerSentEvent withRetry(long retryInMillis) {
+    return new ServerSentEvent(id, event, retryInMillis, data);
+  }
+
+  public String id() {
+    return id;
+  }
+
+  public String event() {
+    return event;
+  }
+
+  public long retry() {
+    return retry;
+  }
+
+  public Object data() {
+    return data;
+  }
+}
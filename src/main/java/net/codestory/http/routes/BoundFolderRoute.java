@@ -52,9 +52,7 @@ class BoundFolderRoute implements Route {
       return Payload.notFound();
     }
 
-    try (InputStream from = new FileInputStream(file)) {
-      return new Payload(ContentTypes.get(file.getName()), InputStreams.readBytes(from));
-    }
+    return new Payload(ContentTypes.get(file.getName()), file.getAbsoluteFile());
   }
 
   public boolean isPublic(File file) {
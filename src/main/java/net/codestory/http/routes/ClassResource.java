@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import net.codestory.http.injection.IocAdapter;
+import net.codestory.http.injection.ResourceScope;
+
+import java.util.function.Supplier;
+
+import static net.codestory.http.injection.ResourceScope.SINGLETON;
+
+// Resource registered by class. Its scope is only known once the routes are
+// configured, when it's resolved into an immutable supplier. That supplier is
+// set before the RoutesProvider hands the routes to the server threads, which
+// publishes it safely, so that a request only reads final fields.
+class ClassResource implements Supplier<Object> {
+  private final Class<?> type;
+
+  private Supplier<Object> target;
+
+  ClassResource(Class<?> type) {
+    this.type = type;
+    this.target = () -> {
+      throw new IllegalStateException(type + " is used before routes are configured");
+    };
+  }
+
+  Class<?> type() {
+    return type;
+  }
+
+  void resolve(IocAdapter iocAdapter, ResourceScope scope) {
+    this.target = (scope == SINGLETON) ? new Singleton(iocAdapter.get(type)) : new Lookup(iocAdapter, type);
+  }
+
+  @Override
+  public Object get() {
+    return target.get();
+  }
+
+  private static class Singleton implements Supplier<Object> {
+    private final Object instance;
+
+    Singleton(Object instance) {
+      this.instance = instance;
+    }
+
+    @Override
+    public Object get() {
+      return instance;
+    }
+  }
+
+  private static class Lookup implements Supplier<Object> {
+    private final IocAdapter iocAdapter;
+    private final Class<?> type;
+
+    Lookup(IocAdapter iocAdapter, Class<?> type) {
+      this.iocAdapter = iocAdapter;
+      this.type = type;
+    }
+
+    @Override
+    public Object get() {
+      return iocAdapter.get(type);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import net.codestory.http.Context;
+import net.codestory.http.filters.Filter;
+import net.codestory.http.filters.FilterScope;
+import net.codestory.http.payload.Payload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Filters that apply to every request are always part of the chain. The others
+// are selected by their static scope and the resulting chain is built once for
+// each combination of scopes, so that out of scope filters are never called.
+// A scope is only trusted if matches() isn't overridden below the class that
+// declares it, since such a matches() can cover more than the scope.
+class FilterChain implements ContextToPayload {
+  private static final int MAX_INDEXED_SCOPES = 10;
+
+  private final Filter[] filters;
+  private final ContextToPayload next;
+  private final int[] scopedIndexes;
+  private final FilterScope[] scopes;
+  private final Chain[] chains;
+  private final Chain unindexed;
+
+  FilterChain(Filter[] filters, ContextToPayload next) {
+    this.filters = filters;
+    this.next = next;
+
+    List<Integer> scoped = new ArrayList<>();
+    for (int i = 0; i < filters.length; i++) {
+      if (!scope(filters[i]).isAll()) {
+        scoped.add(i);
+      }
+    }
+
+    this.scopedIndexes = scoped.stream().mapToInt(Integer::intValue).toArray();
+    this.scopes = scoped.stream().map(index -> scope(filters[index])).toArray(FilterScope[]::new);
+
+    if (scopes.length <= MAX_INDEXED_SCOPES) {
+      this.chains = new Chain[1 << scopes.length];
+      this.unindexed = null;
+    } else {
+      this.chains = null;
+      this.unindexed = new Chain(filters, scopes(filters), next);
+    }
+  }
+
+  @Override
+  public Payload get(String uri, Context context) throws Exception {
+    if (chains == null) {
+      return unindexed.get(uri, context);
+    }
+
+    String method = context.method();
+
+    int mask = 0;
+    for (int i = 0; i < scopes.length; i++) {
+      if (scopes[i].includes(uri, method)) {
+        mask |= 1 << i;
+      }
+    }
+
+    Chain chain = chains[mask];
+    if (chain == null) {
+      chain = chains[mask] = createChain(mask);
+    }
+
+    return chain.get(uri, context);
+  }
+
+  private Chain createChain(int mask) {
+    List<Filter> selected = new ArrayList<>();
+
+    int scopeIndex = 0;
+    for (int i = 0; i < filters.length; i++) {
+      if ((scopeIndex < scopedIndexes.length) && (scopedIndexes[scopeIndex] == i)) {
+        if ((mask & (1 << scopeIndex)) != 0) {
+          selected.add(filters[i]);
+        }
+        scopeIndex++;
+      } else {
+        selected.add(filters[i]);
+      }
+    }
+
+    return new Chain(selected.toArray(new Filter[selected.size()]), null, next);
+  }
+
+  private static FilterScope[] scopes(Filter[] filters) {
+    FilterScope[] scopes = new FilterScope[filters.length];
+    for (int i = 0; i < filters.length; i++) {
+      scopes[i] = scope(filters[i]);
+    }
+    return scopes;
+  }
+
+  static FilterScope scope(Filter filter) {
+    Class<?> declaringMatches;
+    Class<?> declaringScope;
+    try {
+      declaringMatches = filter.getClass().getMethod("matches", String.class, Context.class).getDeclaringClass();
+      declaringScope = filter.getClass().getMethod("scope").getDeclaringClass();
+    } catch (NoSuchMethodException e) {
+      return FilterScope.ALL;
+    }
+
+    if ((declaringMatches != declaringScope) && declaringScope.isAssignableFrom(declaringMatches)) {
+      return FilterScope.ALL;
+    }
+    return filter.scope();
+  }
+
+  // Immutable, so that it can be safely shared between threads once built.
+  private static class Chain implements ContextToPayload {
+    private final Filter[] filters;
+    private final FilterScope[] scopes;
+    private final ContextToPayload next;
+
+    Chain(Filter[] filters, FilterScope[] scopes, ContextToPayload next) {
+      this.filters = filters;
+      this.scopes = scopes;
+      this.next = next;
+    }
+
+    @Override
+    public Payload get(String uri, Context context) throws Exception {
+      return get(0, uri, context);
+    }
+
+    private Payload get(int index, String uri, Context context) throws Exception {
+      for (int i = index; i < filters.length; i++) {
+        Filter filter = filters[i];
+        if (((scopes == null) || scopes[i].includes(uri, context)) && filter.matches(uri, context)) {
+          int nextIndex = i + 1;
+          return filter.apply(uri, context, () -> get(nextIndex, uri, context));
+        }
+      }
+      return next.get(uri, context);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import net.codestory.http.*;
+import net.codestory.http.convert.*;
+
+// Computed once per route method: how to convert each path parameter and how to
+// extract each other parameter from the context. Contexts created by extensions
+// may override extract(), in which case it's called instead.
+class ParametersBinder {
+  private static final ClassValue<Boolean> OVERRIDES_EXTRACT = new ClassValue<Boolean>() {
+    @Override
+    protected Boolean computeValue(Class<?> type) {
+      try {
+        return type.getMethod("extract", Type.class).getDeclaringClass() != Context.class;
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+  };
+
+  private final Type[] types;
+  private final PathParameterConverter[] converters;
+  private final Context.Extractor[] extractors;
+
+  ParametersBinder(Type[] types) {
+    this.types = types;
+    this.converters = new PathParameterConverter[types.length];
+    this.extractors = new Context.Extractor[types.length];
+
+    for (int i = 0; i < types.length; i++) {
+      converters[i] = converter(types[i]);
+      extractors[i] = Context.extractor(types[i]);
+    }
+  }
+
+  Object[] bind(Context context, String[] pathParameters) throws IOException {
+    Object[] arguments = new Object[extractors.length];
+
+    for (int i = 0; i < pathParameters.length; i++) {
+      arguments[i] = converters[i].convert(pathParameters[i]);
+    }
+    boolean overridesExtract = OVERRIDES_EXTRACT.get(context.getClass());
+    for (int i = pathParameters.length; i < arguments.length; i++) {
+      arguments[i] = overridesExtract ? context.extract(types[i]) : extractors[i].extract(context);
+    }
+
+    return arguments;
+  }
+
+  // Common types are parsed directly. Anything unusual goes through the ObjectMapper.
+  static PathParameterConverter converter(Type type) {
+    PathParameterConverter generic = value -> TypeConvert.convertValue(value, type);
+
+    if ((type == String.class) || (type == Object.class) || (type == CharSequence.class)) {
+      return value -> value;
+    }
+    if ((type == int.class) || (type == Integer.class)) {
+      return orElse(Integer::valueOf, generic);
+    }
+    if ((type == long.class) || (type == Long.class)) {
+      return orElse(Long::valueOf, generic);
+    }
+    if ((type == double.class) || (type == Double.class)) {
+      return orElse(Double::valueOf, generic);
+    }
+    if ((type == boolean.class) || (type == Boolean.class)) {
+      return orElse(ParametersBinder::parseBoolean, generic);
+    }
+    if (type == UUID.class) {
+      return orElse(ParametersBinder::parseUuid, generic);
+    }
+    return generic;
+  }
+
+  private static PathParameterConverter orElse(PathParameterConverter parser, PathParameterConverter generic) {
+    return value -> {
+      if ((value != null) && !value.isEmpty()) {
+        try {
+          return parser.convert(value);
+        } catch (IllegalArgumentException e) {
+          // Let the ObjectMapper deal with it
+        }
+      }
+      return generic.convert(value);
+    };
+  }
+
+  private static Boolean parseBoolean(String value) {
+    if ("true".equals(value)) {
+      return Boolean.TRUE;
+    }
+    if ("false".equals(value)) {
+      return Boolean.FALSE;
+    }
+    throw new IllegalArgumentException("Not a boolean: " + value);
+  }
+
+  private static UUID parseUuid(String value) {
+    if (value.length() != 36) {
+      throw new IllegalArgumentException("Not a canonical uuid: " + value);
+    }
+    return UUID.fromString(value);
+  }
+
+  @FunctionalInterface
+  interface PathParameterConverter {
+    Object convert(String value);
+  }
+}
@@ -16,22 +16,26 @@
 package net.codestory.http.routes;
 
 import java.io.*;
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.util.function.*;
 
 import net.codestory.http.*;
 import net.codestory.http.annotations.*;
-import net.codestory.http.convert.*;
 import net.codestory.http.payload.*;
 
 class ReflectionRoute implements AnyRoute {
   private final Supplier<Object> resource;
-  private final Method method;
+  private final MethodHandle invoker;
+  private final ParametersBinder binder;
+  private final String contentType;
   private final MethodAnnotations annotations;
 
   ReflectionRoute(Supplier<Object> resource, Method method, MethodAnnotations annotations) {
     this.resource = resource;
-    this.method = method;
+    this.invoker = invoker(method);
+    this.binder = new ParametersBinder(method.getGenericParameterTypes());
+    this.contentType = findContentType(method);
     this.annotations = annotations;
   }
 
@@ -41,46 +45,44 @@ class ReflectionRoute implements AnyRoute {
       try {
         Object target = resource.get();
 
-        Object[] arguments = convert(ctx, pathParameters, method.getGenericParameterTypes());
-        Object response = invoke(target, method, arguments);
+        Object[] arguments = binder.bind(ctx, pathParameters);
+        Object response = invoker.invokeExact(target, arguments);
         Object body = emptyIfNull(response);
-        String contentType = findContentType(method);
 
         return new Payload(contentType, body);
-      } catch (InvocationTargetException e) {
-        if (e.getCause() instanceof RuntimeException) {
-          throw (RuntimeException) e.getCause();
-        }
-        throw new IllegalStateException("Unable to apply route", e.getCause());
       } catch (RuntimeException e) {
         throw e;
-      } catch (Exception e) {
+      } catch (Throwable e) {
         throw new IllegalStateException("Unable to apply route", e);
       }
     });
   }
 
   static Object[] convert(Context context, String[] pathParameters, Type... types) throws IOException {
-    Object[] converted = new Object[types.length];
-
-    // String parameters
-    for (int i = 0; i < pathParameters.length; i++) {
-      converted[i] = TypeConvert.convertValue(pathParameters[i], types[i]);
-    }
-
-    // Other parameters
-    for (int i = pathParameters.length; i < converted.length; i++) {
-      converted[i] = context.extract(types[i]);
-    }
-
-    return converted;
+    return new ParametersBinder(types).bind(context, pathParameters);
   }
 
-  private static Object invoke(Object target, Method method, Object[] arguments) throws InvocationTargetException, IllegalAccessException {
+  // (Object target, Object[] arguments) -> Object, bound once instead of going through Method.invoke
+  static MethodHandle invoker(Method method) {
+    int parameterCount = method.getParameterCount();
+
+    MethodHandle handle;
+    try {
       if (!method.isAccessible()) {
         method.setAccessible(true);
       }
-      return method.invoke(target, arguments);
+      handle = MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Unable to access " + method, e);
+    }
+
+    if (Modifier.isStatic(method.getModifiers())) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+
+    return handle
+      .asType(MethodType.genericMethodType(parameterCount + 1))
+      .asSpreader(Object[].class, parameterCount);
   }
 
   private static Object emptyIfNull(Object payload) {
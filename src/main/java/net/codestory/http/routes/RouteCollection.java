@@ -25,6 +25,7 @@ import net.codestory.http.convert.TypeConvert;
 import net.codestory.http.extensions.Extensions;
 import net.codestory.http.filters.Filter;
 import net.codestory.http.injection.IocAdapter;
+import net.codestory.http.injection.ResourceScope;
 import net.codestory.http.injection.Singletons;
 import net.codestory.http.io.ClassPaths;
 import net.codestory.http.io.ClasspathScanner;
@@ -42,15 +43,17 @@ import net.codestory.http.websockets.WebSocketSession;
 import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Stream.of;
 import static net.codestory.http.annotations.AnnotationHelper.parseAnnotations;
 import static net.codestory.http.constants.Methods.*;
-import static net.codestory.http.payload.Payload.*;
 import static net.codestory.http.routes.UriParser.paramsCount;
 
 public class RouteCollection implements Routes {
@@ -61,8 +64,10 @@ public class RouteCollection implements Routes {
   protected final MethodAnnotationsFactory methodAnnotationsFactory;
   protected final RouteSorter routes;
   protected final Deque<Supplier<Filter>> filters;
+  protected final List<ClassResource> classResources;
 
   protected IocAdapter iocAdapter;
+  protected ResourceScope resourceScope;
   protected Extensions extensions;
   protected WebSocketListenerFactory webSocketListenerFactory;
   protected ContextToPayload contextToPayload;
@@ -75,6 +80,7 @@ public class RouteCollection implements Routes {
     this.methodAnnotationsFactory = createMethodAnnotationsFactory();
     this.routes = new RouteSorter();
     this.filters = new LinkedList<>();
+    this.classResources = new ArrayList<>();
     this.iocAdapter = new Singletons();
     this.extensions = new Extensions() {
       // No extension
@@ -86,12 +92,28 @@ public class RouteCollection implements Routes {
 
   public void configure(Configuration configuration) {
     configuration.configure(this);
+    resolveClassResources();
     installExtensions();
     addStaticRoutes();
 
     contextToPayload = createContextToPayload(routes.getSortedRoutes(), filters);
   }
 
+  private void resolveClassResources() {
+    ResourceScope scope = resourceScope();
+    if ((scope == ResourceScope.SINGLETON) && (iocAdapter instanceof Singletons)) {
+      ((Singletons) iocAdapter).createEagerly(classResources.stream().map(ClassResource::type).collect(toList()));
+    }
+    classResources.forEach(resource -> resource.resolve(iocAdapter, scope));
+  }
+
+  // Without an explicit scope, resources are created on first request, as the
+  // IocAdapter decides. With the SINGLETON scope, they're created here, so that
+  // their constructors' errors fail the configuration
+  private ResourceScope resourceScope() {
+    return (resourceScope != null) ? resourceScope : ResourceScope.PER_REQUEST;
+  }
+
   private void installExtensions() {
     TypeConvert.configureOrReplaceMapper(mapper -> extensions.configureOrReplaceObjectMapper(mapper, env));
     extensions.configureCompilers(compilers, env);
@@ -131,6 +153,12 @@ public class RouteCollection implements Routes {
     return this;
   }
 
+  @Override
+  public RouteCollection setResourceScope(ResourceScope resourceScope) {
+    this.resourceScope = resourceScope;
+    return this;
+  }
+
   @Override
   public Routes setWebSocketListenerFactory(WebSocketListenerFactory factory) {
     this.webSocketListenerFactory = factory;
@@ -151,13 +179,13 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection add(Class<?> resourceType) {
-    addResource("", resourceType, () -> iocAdapter.get(resourceType));
+    addResource("", resourceType, classResource(resourceType));
     return this;
   }
 
   @Override
   public RouteCollection add(String urlPrefix, Class<?> resourceType) {
-    addResource(urlPrefix, resourceType, () -> iocAdapter.get(resourceType));
+    addResource(urlPrefix, resourceType, classResource(resourceType));
     return this;
   }
 
@@ -173,6 +201,12 @@ public class RouteCollection implements Routes {
     return this;
   }
 
+  protected Supplier<Object> classResource(Class<?> resourceType) {
+    ClassResource resource = new ClassResource(resourceType);
+    classResources.add(resource);
+    return resource;
+  }
+
   protected void addResource(String urlPrefix, Class<?> resourceType, Supplier<Object> resource) {
     parseAnnotations(urlPrefix, resourceType, (httpMethod, uri, method) -> addResource(httpMethod, method, resource, uri));
   }
@@ -507,11 +541,20 @@ public class RouteCollection implements Routes {
 
   @Override
   public RouteCollection autoDiscover(String packageToScan) {
-    Set<Class<?>> types = new ClasspathScanner().getTypesAnnotatedWith(packageToScan, Resource.class);
+    ClasspathScanner scanner = classpathScanner();
+
+    // The index is only trusted in production where it comes from a full build
+    Set<Class<?>> types = env.prodMode()
+      ? scanner.getIndexedTypes(ResourcesProcessor.INDEX, packageToScan).orElseGet(() -> scanner.getTypesAnnotatedWith(packageToScan, Resource.class))
+      : scanner.getTypesAnnotatedWith(packageToScan, Resource.class);
     types.forEach(this::add);
     return this;
   }
 
+  ClasspathScanner classpathScanner() {
+    return new ClasspathScanner();
+  }
+
   @Override
   public Routes bind(String uriRoot, File path) {
     routes.addStaticRoute(new BoundFolderRoute(uriRoot, path));
@@ -568,36 +611,16 @@ public class RouteCollection implements Routes {
   }
 
   private static ContextToPayload createContextToPayload(Route[] sortedRoutes, Deque<Supplier<Filter>> filters) {
-    ContextToPayload payloadSupplier = (uri, context) -> {
-      Payload response = notFound();
-
-      for (Route route : sortedRoutes) {
-        if (route.matchUri(uri)) {
-          if (route.matchMethod(context.method())) {
-            return route.apply(uri, context);
-          }
-          response = methodNotAllowed();
-        }
-      }
-
-      return response;
-    };
-
-    for (Supplier<Filter> filterSupplier : filters) {
-      Filter filter = filterSupplier.get();
-
-      ContextToPayload nextFilter = payloadSupplier;
-
-      payloadSupplier = (uri, context) -> {
-        if (filter.matches(uri, context)) {
-          return filter.apply(uri, context, () -> nextFilter.get(uri, context));
-        } else {
-          return nextFilter.get(uri, context);
-        }
-      };
+    ContextToPayload payloadSupplier = new RouteIndex(sortedRoutes);
+    if (filters.isEmpty()) {
+      return payloadSupplier;
     }
 
-    return payloadSupplier;
+    // Filters are stored most recent first but applied in order of definition
+    List<Filter> orderedFilters = new ArrayList<>();
+    filters.descendingIterator().forEachRemaining(filterSupplier -> orderedFilters.add(filterSupplier.get()));
+
+    return new FilterChain(orderedFilters.toArray(new Filter[orderedFilters.size()]), payloadSupplier);
   }
 
   protected MethodAnnotationsFactory createMethodAnnotationsFactory() {
@@ -610,6 +633,8 @@ public class RouteCollection implements Routes {
     factory.registerAfterAnnotation(AllowHeaders.class, () -> (allowedHeaders, context, payload) -> payload.withAllowHeaders(allowedHeaders.value()));
     factory.registerAfterAnnotation(ExposeHeaders.class, () -> (exposedHeaders, context, payload) -> payload.withExposeHeaders(exposedHeaders.value()));
     factory.registerAfterAnnotation(MaxAge.class, () -> (maxAge, context, payload) -> payload.withMaxAge(maxAge.value()));
+    factory.registerAfterAnnotation(StreamJson.class, () -> (streamJson, context, payload) -> payload.withJsonStreaming());
+    factory.registerAfterAnnotation(Timeout.class, () -> (timeout, context, payload) -> payload.withTimeout(timeout.value()));
 
     return factory;
   }
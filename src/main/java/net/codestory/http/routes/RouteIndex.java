@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static net.codestory.http.constants.Headers.ALLOW;
+import static net.codestory.http.constants.Methods.*;
+import static net.codestory.http.payload.Payload.methodNotAllowed;
+import static net.codestory.http.payload.Payload.notFound;
+import static net.codestory.http.payload.Payload.ok;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.codestory.http.Context;
+import net.codestory.http.payload.Payload;
+
+// Routes with a pattern are stored in a tree of uri segments so that finding the
+// candidates for a uri depends on its depth, not on the number of routes.
+// Each node holds one table of routes per http method and the set of allowed methods.
+// Other routes are tried in between, at their original position.
+class RouteIndex implements ContextToPayload {
+  private final Route[] routes;
+  private final int[] unindexed;
+  private final List<String> methods;
+  private final Map<String, Integer> methodIndexes;
+  private final Map<Integer, String> allowHeaders;
+  private final Node root;
+
+  RouteIndex(Route[] sortedRoutes) {
+    this.routes = sortedRoutes;
+    this.methods = new ArrayList<>(Arrays.asList(GET, HEAD, POST, PUT, PATCH, DELETE, OPTIONS));
+    this.methodIndexes = new HashMap<>();
+    for (int i = 0; i < methods.size(); i++) {
+      methodIndexes.put(methods.get(i), i);
+    }
+    this.allowHeaders = new ConcurrentHashMap<>();
+    this.root = new Node();
+
+    int[] others = new int[sortedRoutes.length];
+    int count = 0;
+    for (int position = 0; position < sortedRoutes.length; position++) {
+      Route route = sortedRoutes[position];
+      if (route instanceof RouteWithPattern) {
+        RouteWithPattern routeWithPattern = (RouteWithPattern) route;
+
+        String method = routeWithPattern.method().toUpperCase(Locale.ENGLISH);
+        root.add(routeWithPattern.uriParser(), methodIndex(method), position);
+        if (GET.equals(method)) {
+          root.add(routeWithPattern.uriParser(), methodIndex(HEAD), position);
+        }
+      } else {
+        others[count++] = position;
+      }
+    }
+    this.unindexed = Arrays.copyOf(others, count);
+  }
+
+  private int methodIndex(String method) {
+    Integer index = methodIndexes.get(method);
+    if (index == null) {
+      if (methods.size() == Integer.SIZE - 1) {
+        throw new IllegalArgumentException("Too many http methods, unable to add " + method);
+      }
+      index = methods.size();
+      methods.add(method);
+      methodIndexes.put(method, index);
+    }
+    return index;
+  }
+
+  @Override
+  public Payload get(String uri, Context context) throws Exception {
+    String method = context.method();
+    Match match = find(uri, method);
+
+    int first = (match.size > 0) ? match.positions[0] : Integer.MAX_VALUE;
+    int allowed = match.allowed;
+    for (int position : unindexed) {
+      if (position > first) {
+        break;
+      }
+
+      Route route = routes[position];
+      if (route.matchUri(uri)) {
+        if (route.matchMethod(method)) {
+          return route.apply(uri, context);
+        }
+        allowed |= allowedMethods(route);
+      }
+    }
+
+    if (match.size > 0) {
+      return routes[first].apply(uri, context);
+    }
+    if (allowed == 0) {
+      return notFound();
+    }
+
+    String allow = allowHeader(allowed | (1 << methodIndex(OPTIONS)));
+    if (OPTIONS.equalsIgnoreCase(method)) {
+      return ok().withHeader(ALLOW, allow);
+    }
+    return methodNotAllowed().withHeader(ALLOW, allow);
+  }
+
+  Match find(String uri, String method) {
+    Match match = new Match();
+
+    int end = uri.indexOf('?');
+    root.collect(uri, 0, (end == -1) ? uri.length() : end, false, methodIndexOf(method), match);
+    match.sort();
+
+    return match;
+  }
+
+  private int methodIndexOf(String method) {
+    Integer index = methodIndexes.get(method);
+    if (index == null) {
+      index = methodIndexes.get(method.toUpperCase(Locale.ENGLISH));
+    }
+    return (index == null) ? -1 : index;
+  }
+
+  private int allowedMethods(Route route) {
+    int allowed = 0;
+    for (int i = 0; i < methods.size(); i++) {
+      if (route.matchMethod(methods.get(i))) {
+        allowed |= 1 << i;
+      }
+    }
+    return allowed;
+  }
+
+  String allowHeader(int allowed) {
+    return allowHeaders.computeIfAbsent(allowed, key -> {
+      StringJoiner allow = new StringJoiner(", ");
+      for (int i = 0; i < methods.size(); i++) {
+        if ((key & (1 << i)) != 0) {
+          allow.add(methods.get(i));
+        }
+      }
+      return allow.toString();
+    });
+  }
+
+  static class Match {
+    private int[] positions = new int[4];
+    private int size;
+    private int allowed;
+
+    private void addAll(int[] values) {
+      if (size + values.length > positions.length) {
+        positions = Arrays.copyOf(positions, Math.max(positions.length * 2, size + values.length));
+      }
+      System.arraycopy(values, 0, positions, size, values.length);
+      size += values.length;
+    }
+
+    private void sort() {
+      Arrays.sort(positions, 0, size);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int get(int index) {
+      return positions[index];
+    }
+
+    int allowed() {
+      return allowed;
+    }
+  }
+
+  private static class Node implements Serializable {
+    private final Map<String, Node> literals = new HashMap<>();
+    private final MethodTable routes = new MethodTable();
+    private final MethodTable greedyRoutes = new MethodTable();
+    private Node parameter;
+
+    private void add(UriParser uriParser, int methodIndex, int position) {
+      String[] parts = uriParser.patternParts();
+      int depth = uriParser.isGreedy() ? parts.length - 1 : parts.length;
+
+      Node node = this;
+      for (int i = 0; i < depth; i++) {
+        node = node.child(parts[i]);
+      }
+
+      if (uriParser.isGreedy()) {
+        node.greedyRoutes.add(methodIndex, position);
+      } else {
+        node.routes.add(methodIndex, position);
+      }
+    }
+
+    private Node child(String part) {
+      if (part.startsWith(":")) {
+        if (parameter == null) {
+          parameter = new Node();
+        }
+        return parameter;
+      }
+      return literals.computeIfAbsent(part, key -> new Node());
+    }
+
+    // from is the start of the next segment to consume, -1 once the whole uri is consumed
+    private void collect(String uri, int from, int end, boolean emptyParameter, int methodIndex, Match match) {
+      if (from == -1) {
+        if (!emptyParameter) {
+          routes.collect(methodIndex, match);
+        }
+        return;
+      }
+
+      int to = uri.indexOf('/', from);
+      if ((to == -1) || (to > end)) {
+        to = end;
+      }
+      int next = (to == end) ? -1 : to + 1;
+
+      if (to > from) {
+        greedyRoutes.collect(methodIndex, match);
+      }
+      if (!literals.isEmpty()) {
+        Node literal = literals.get(uri.substring(from, to));
+        if (literal != null) {
+          literal.collect(uri, next, end, false, methodIndex, match);
+        }
+      }
+      if (parameter != null) {
+        parameter.collect(uri, next, end, to == from, methodIndex, match);
+      }
+    }
+  }
+
+  private static class MethodTable implements Serializable {
+    private static final int[] NONE = new int[0];
+
+    private int[][] positionsByMethod = new int[0][];
+    private int allowed;
+
+    private void add(int methodIndex, int position) {
+      if (methodIndex >= positionsByMethod.length) {
+        int length = positionsByMethod.length;
+        positionsByMethod = Arrays.copyOf(positionsByMethod, methodIndex + 1);
+        Arrays.fill(positionsByMethod, length, positionsByMethod.length, NONE);
+      }
+
+      int[] positions = positionsByMethod[methodIndex];
+      positions = Arrays.copyOf(positions, positions.length + 1);
+      positions[positions.length - 1] = position;
+
+      positionsByMethod[methodIndex] = positions;
+      allowed |= 1 << methodIndex;
+    }
+
+    private void collect(int methodIndex, Match match) {
+      if (allowed == 0) {
+        return;
+      }
+
+      match.allowed |= allowed;
+      if ((methodIndex >= 0) && (methodIndex < positionsByMethod.length)) {
+        match.addAll(positionsByMethod[methodIndex]);
+      }
+    }
+  }
+}
@@ -35,6 +35,10 @@ class RouteWithPattern implements Route {
     this.route = route;
   }
 
+  public String method() {
+    return method;
+  }
+
   public UriParser uriParser() {
     return uriParser;
   }
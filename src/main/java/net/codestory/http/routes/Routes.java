@@ -20,6 +20,7 @@ import net.codestory.http.annotations.ApplyAfterAnnotation;
 import net.codestory.http.extensions.Extensions;
 import net.codestory.http.filters.Filter;
 import net.codestory.http.injection.IocAdapter;
+import net.codestory.http.injection.ResourceScope;
 import net.codestory.http.websockets.WebSocketListenerFactory;
 
 import java.io.*;
@@ -30,6 +31,11 @@ public interface Routes extends Serializable {
 
   Routes setIocAdapter(IocAdapter iocAdapter);
 
+  // Resources are looked up per request unless an implementation supports scopes
+  default Routes setResourceScope(ResourceScope resourceScope) {
+    return this;
+  }
+
   Routes setWebSocketListenerFactory(WebSocketListenerFactory factory);
 
   Routes filter(Class<? extends Filter> filterClass);
@@ -17,6 +17,7 @@ package net.codestory.http.routes;
 
 import net.codestory.http.Context;
 import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.compilers.SourceFile;
 import net.codestory.http.io.Resources;
 import net.codestory.http.misc.Cache;
 
@@ -25,12 +26,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.function.*;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static net.codestory.http.constants.Methods.GET;
 import static net.codestory.http.constants.Methods.HEAD;
 import static net.codestory.http.io.Strings.extension;
 
 class StaticRoute implements Route {
   private static final Path NOT_FOUND = Paths.get("");
+  private static final int MAX_CACHED_URIS = 10_000;
+  private static final long MAX_CACHED_SOURCES = 32 * 1024 * 1024L;
 
   private final Resources resources;
   private final CompilerFacade compilers;
@@ -38,7 +42,10 @@ class StaticRoute implements Route {
 
   StaticRoute(boolean cached, Resources resources, CompilerFacade compilers) {
     if (cached) {
-      this.findPath = new Cache<>(this::findPath);
+      this.findPath = new Cache<String, Object>(this::findPath)
+        .withMaxSize(MAX_CACHED_URIS)
+        .withMaxWeight(MAX_CACHED_SOURCES, StaticRoute::weight)
+        .withNegativeExpiry(path -> path == NOT_FOUND, 1, MINUTES);
     } else {
       this.findPath = this::findPath;
     }
@@ -63,6 +70,11 @@ class StaticRoute implements Route {
     return findPath.apply(uri);
   }
 
+  // Source files hold their content, paths are only a few bytes
+  private static long weight(Object path) {
+    return (path instanceof SourceFile) ? 64 + 2L * ((SourceFile) path).getSource().length() : 64;
+  }
+
   private Object findPath(String uri) {
     try {
       Path path = resources.findExistingPath(uri);
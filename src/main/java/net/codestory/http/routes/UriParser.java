@@ -18,64 +18,114 @@ package net.codestory.http.routes;
 import net.codestory.http.Query;
 import net.codestory.http.io.Strings;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
-import static java.util.Arrays.asList;
-
 public class UriParser implements Comparable<UriParser> {
   private final String uriPattern;
   private final String[] patternParts;
-  private final String[] queryParamsParts;
+  private final String[] literals;
+  private final String[] queryParamNames;
   private final int paramsCount;
+  private final boolean greedy;
 
   public UriParser(String uriPattern) {
     this.uriPattern = uriPattern;
     this.patternParts = parts(stripQueryParams(uriPattern));
-    this.queryParamsParts = queryParamsParts(extractQueryParams(uriPattern));
+    this.literals = literals(patternParts);
+    this.queryParamNames = queryParamNames(extractQueryParams(uriPattern));
     this.paramsCount = paramsCount(uriPattern);
+    this.greedy = endsWithGreedyParameter(uriPattern);
   }
 
   public String uriPattern() {
     return uriPattern;
   }
 
+  String[] patternParts() {
+    return patternParts;
+  }
+
+  boolean isGreedy() {
+    return greedy;
+  }
+
   public String[] params(String uri, Query query) {
-    String[] uriParts = parts(uri);
     String[] params = new String[paramsCount];
 
     int index = 0;
-    for (int i = 0; i < patternParts.length; i++) {
-      if (patternParts[i].startsWith(":")) {
-        if (i == patternParts.length - 1 && patternParts[i].startsWith(":") && patternParts[i].endsWith(":"))
-          params[index++] = String.join("/", asList(uriParts).subList(i, uriParts.length));
-        else {
-          params[index++] = uriParts[i];
-        }
+    int end = pathEnd(uri);
+    int from = 0;
+    int last = literals.length - 1;
+    for (int i = 0; (i <= last) && (from <= end); i++) {
+      int to = segmentEnd(uri, from, end);
+      if (literals[i] == null) {
+        params[index++] = uri.substring(from, (greedy && (i == last)) ? end : to);
       }
+      from = to + 1;
     }
-    for (int i = 0; i < queryParamsParts.length; i++) {
-      if (queryParamsParts[i].startsWith(":")) {
-        params[index++] = query.get(queryParamsParts[i - 1]);
-      }
+    for (String name : queryParamNames) {
+      params[index++] = query.get(name);
     }
 
     return params;
   }
 
   public boolean matches(String uri) {
-    String[] uriParts = parts(stripQueryParams(uri));
-    if (patternParts.length != uriParts.length && !endsWithGreedyParameter(uriPattern)) {
-      return false;
-    }
+    int end = pathEnd(uri);
+    int from = 0;
+    int last = literals.length - 1;
+    for (int i = 0; i <= last; i++) {
+      if (from > end) {
+        return false;
+      }
 
-    for (int i = 0; i < patternParts.length; i++) {
-      if (!patternParts[i].startsWith(":") && !patternParts[i].equals(uriParts[i])) {
+      int to = segmentEnd(uri, from, end);
+      String literal = literals[i];
+      if (literal != null) {
+        if (((to - from) != literal.length()) || !uri.startsWith(literal, from)) {
+          return false;
+        }
+      } else if ((i == last) && (to == from)) {
         return false;
       }
+
+      from = to + 1;
     }
 
-    int lastPart = patternParts.length - 1;
-    return lastPart < uriParts.length && !(patternParts[lastPart].startsWith(":") && uriParts[lastPart].isEmpty());
+    return greedy || (from > end);
+  }
+
+  // Index of the '/' that ends the segment starting at from, or end for the last segment
+  private static int segmentEnd(String uri, int from, int end) {
+    int slash = uri.indexOf('/', from);
+    return ((slash == -1) || (slash > end)) ? end : slash;
+  }
+
+  private static int pathEnd(String uri) {
+    int indexQuestionMark = uri.indexOf('?');
+    return (indexQuestionMark == -1) ? uri.length() : indexQuestionMark;
+  }
+
+  private static String[] literals(String[] patternParts) {
+    String[] literals = new String[patternParts.length];
+    for (int i = 0; i < patternParts.length; i++) {
+      literals[i] = patternParts[i].startsWith(":") ? null : patternParts[i];
+    }
+    return literals;
+  }
+
+  private static String[] queryParamNames(String queryParams) {
+    String[] parts = queryParams.split("[=&]", -1);
+
+    List<String> names = new ArrayList<>();
+    for (int i = 1; i < parts.length; i++) {
+      if (parts[i].startsWith(":")) {
+        names.add(parts[i - 1]);
+      }
+    }
+    return names.toArray(new String[names.size()]);
   }
 
   private static boolean endsWithGreedyParameter(String uriPattern) {
@@ -90,10 +140,6 @@ public class UriParser implements Comparable<UriParser> {
     return uri.split("/", -1);
   }
 
-  private static String[] queryParamsParts(String uri) {
-    return uri.split("[=&]", -1);
-  }
-
   static String stripQueryParams(String uri) {
     int indexSlash = uri.indexOf('?');
     return (indexSlash == -1) ? uri : uri.substring(0, indexSlash);
@@ -15,8 +15,6 @@
  */
 package net.codestory.http.routes;
 
-import static java.time.ZonedDateTime.*;
-import static java.time.format.DateTimeFormatter.*;
 import static java.util.stream.Collectors.toList;
 import static net.codestory.http.constants.Headers.*;
 import static net.codestory.http.constants.Methods.*;
@@ -33,12 +31,16 @@ import net.codestory.http.misc.*;
 import net.codestory.http.payload.*;
 
 class WebJarsRoute implements Route {
+  private static final String CACHE_FOREVER = "public, max-age=31536000";
+
   private final boolean prodMode;
   private final WebJarUrlFinder webJarUrlFinder;
+  private final WebJarIndex index;
 
   public WebJarsRoute(boolean prodMode) {
     this.prodMode = prodMode;
     this.webJarUrlFinder = new WebJarUrlFinder(prodMode);
+    this.index = prodMode ? WebJarIndex.scan() : null;
   }
 
   @Override
@@ -48,14 +50,15 @@ class WebJarsRoute implements Route {
       return false;
     }
 
-    if (getResource(uri) != null) {
-      return true;
+    if (prodMode) {
+      return index.contains(uri);
     }
 
-    if (!prodMode) {
-      printKnownWebjars(uri);
+    if (getResource(uri) != null) {
+      return true;
     }
 
+    printKnownWebjars(uri);
     return false;
   }
 
@@ -84,12 +87,15 @@ class WebJarsRoute implements Route {
   public Payload body(Context context) {
     String uri = context.uri();
 
+    // Webjars are versioned, their content never changes for a given uri
+    if (prodMode) {
+      return new Payload(index.get(uri))
+        .withHeader(CACHE_CONTROL, CACHE_FOREVER + ", immutable");
+    }
+
     URL url = webJarUrlFinder.url(uri);
 
-    return new Payload(url)
-      .withHeader(CACHE_CONTROL, "public, max-age=31536000")
-      .withHeader(LAST_MODIFIED, RFC_1123_DATE_TIME.format(now().minusMonths(1L)))
-      .withHeader(EXPIRES, RFC_1123_DATE_TIME.format(now().plusWeeks(1L)));
+    return new Payload(url).withHeader(CACHE_CONTROL, CACHE_FOREVER);
   }
 
   private static URL getResource(String uri) {
@@ -26,6 +26,8 @@ import net.codestory.http.misc.Sha1;
 
 import com.github.jknack.handlebars.Options;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
+
 public class AssetsHelperSource {
   private final Resources resources;
   private final CompilerFacade compilers;
@@ -34,7 +36,7 @@ public class AssetsHelperSource {
   public AssetsHelperSource(boolean prodMode, Resources resources, CompilerFacade compilers) {
     this.resources = resources;
     this.compilers = compilers;
-    this.urlSupplier = prodMode ? new Cache<>(this::uriWithSha1) : this::uriWithSha1;
+    this.urlSupplier = prodMode ? new Cache<String, String>(this::uriWithSha1).withNegativeExpiry(url -> url.indexOf('?') < 0, 1, MINUTES) : this::uriWithSha1;
   }
 
   // Handler entry points
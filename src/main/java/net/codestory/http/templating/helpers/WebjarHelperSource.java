@@ -22,6 +22,7 @@ import net.codestory.http.misc.WebJarUrlFinder;
 import java.net.URL;
 import java.util.function.Function;
 
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static net.codestory.http.io.Strings.substringAfter;
 
 public class WebjarHelperSource {
@@ -30,7 +31,7 @@ public class WebjarHelperSource {
 
   public WebjarHelperSource(boolean prodMode) {
     this.webJarUrlFinder = new WebJarUrlFinder(prodMode);
-    this.fullPathForUri = prodMode ? new Cache<>(this::fullPathForUri) : this::fullPathForUri;
+    this.fullPathForUri = prodMode ? new Cache<String, String>(this::fullPathForUri).withNegativeExpiry(path -> !path.startsWith("/webjars/"), 1, MINUTES) : this::fullPathForUri;
   }
 
   // Handler entry point
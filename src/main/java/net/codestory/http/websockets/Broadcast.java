@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.websockets;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+// Topic based fan out of messages to web socket sessions and to event streams.
+// Each message is encoded once into a frame shared by all the subscribers.
+// Every subscriber has a bounded queue. Those that can't keep up, and let their
+// queue fill up, are evicted: their session is closed or their stream ends.
+public class Broadcast {
+  public static final int DEFAULT_QUEUE_CAPACITY = 256;
+  public static final int DEFAULT_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  private static final BroadcastFrame END = BroadcastFrame.of(new byte[0]);
+
+  private final int queueCapacity;
+  private final Executor executor;
+  private final Map<String, Set<Subscriber>> topics = new ConcurrentHashMap<>();
+
+  public Broadcast() {
+    this(DEFAULT_QUEUE_CAPACITY, defaultExecutor());
+  }
+
+  public Broadcast(int queueCapacity, Executor executor) {
+    this.queueCapacity = queueCapacity;
+    this.executor = executor;
+  }
+
+  public void subscribe(String topic, WebSocketSession session) {
+    subscribers(topic).add(new SessionSubscriber(topic, session));
+  }
+
+  public void unsubscribe(String topic, WebSocketSession session) {
+    Set<Subscriber> subscribers = topics.get(topic);
+    if (subscribers != null) {
+      subscribers.removeIf(subscriber -> (subscriber instanceof SessionSubscriber) && (((SessionSubscriber) subscriber).session == session));
+    }
+  }
+
+  // Messages published to the topic, to be sent as server-sent events.
+  // Closing the stream unsubscribes, and ends an iteration waiting for the
+  // next message, even from another thread
+  public Stream<BroadcastFrame> stream(String topic) {
+    StreamSubscriber subscriber = new StreamSubscriber(topic);
+    subscribers(topic).add(subscriber);
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(subscriber, 0), false).onClose(() -> {
+      remove(subscriber);
+      subscriber.evict();
+    });
+  }
+
+  public int subscriberCount(String topic) {
+    Set<Subscriber> subscribers = topics.get(topic);
+    return (subscribers == null) ? 0 : subscribers.size();
+  }
+
+  // Returns the number of subscribers the message was queued for
+  public int publish(String topic, Object message) {
+    Set<Subscriber> subscribers = topics.get(topic);
+    if ((subscribers == null) || subscribers.isEmpty()) {
+      return 0;
+    }
+
+    BroadcastFrame frame = BroadcastFrame.of(message);
+
+    int count = 0;
+    for (Subscriber subscriber : subscribers) {
+      if (subscriber.offer(frame)) {
+        count++;
+      } else {
+        remove(subscriber);
+        subscriber.evict();
+      }
+    }
+    return count;
+  }
+
+  // There's at most one queued drain task per session
+  private static Executor defaultExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60, SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "broadcast");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private Set<Subscriber> subscribers(String topic) {
+    return topics.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet());
+  }
+
+  private void remove(Subscriber subscriber) {
+    Set<Subscriber> subscribers = topics.get(subscriber.topic);
+    if (subscribers != null) {
+      subscribers.remove(subscriber);
+    }
+  }
+
+  private abstract class Subscriber {
+    final String topic;
+    final BlockingQueue<BroadcastFrame> queue = new ArrayBlockingQueue<>(queueCapacity);
+
+    Subscriber(String topic) {
+      this.topic = topic;
+    }
+
+    boolean offer(BroadcastFrame frame) {
+      return queue.offer(frame);
+    }
+
+    abstract void evict();
+  }
+
+  private class SessionSubscriber extends Subscriber {
+    final WebSocketSession session;
+    final AtomicBoolean draining = new AtomicBoolean();
+
+    SessionSubscriber(String topic, WebSocketSession session) {
+      super(topic);
+      this.session = session;
+    }
+
+    @Override
+    boolean offer(BroadcastFrame frame) {
+      if (!super.offer(frame)) {
+        return false;
+      }
+      if (draining.compareAndSet(false, true)) {
+        executor.execute(this::drain);
+      }
+      return true;
+    }
+
+    // A single task per session sends queued frames in order
+    private void drain() {
+      do {
+        BroadcastFrame frame;
+        while ((frame = queue.poll()) != null) {
+          try {
+            frame.sendTo(session);
+          } catch (IOException e) {
+            remove(this);
+            queue.clear();
+            break;
+          }
+        }
+        draining.set(false);
+      } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    @Override
+    void evict() {
+      queue.clear();
+      try {
+        session.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+  }
+
+  private class StreamSubscriber extends Subscriber implements Iterator<BroadcastFrame> {
+    private volatile boolean ended;
+    private BroadcastFrame next;
+
+    StreamSubscriber(String topic) {
+      super(topic);
+    }
+
+    @Override
+    void evict() {
+      ended = true;
+      queue.clear();
+      queue.offer(END);
+    }
+
+    // Waits with a timeout, in case the END marker couldn't be queued
+    @Override
+    public boolean hasNext() {
+      try {
+        while ((next == null) && !ended) {
+          next = queue.poll(1, SECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        ended = true;
+      }
+      if (ended) {
+        next = END;
+      }
+      return next != END;
+    }
+
+    @Override
+    public BroadcastFrame next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      BroadcastFrame frame = next;
+      next = null;
+      return frame;
+    }
+  }
+}
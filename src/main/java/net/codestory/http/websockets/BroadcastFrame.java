@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.websockets;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.codestory.http.constants.FrameTypes.BINARY;
+import static net.codestory.http.constants.FrameTypes.TEXT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// A message encoded once and shared, as is, by every subscriber of a topic.
+public final class BroadcastFrame implements Frame {
+  private final String type;
+  private final byte[] bytes;
+
+  private BroadcastFrame(String type, byte[] bytes) {
+    this.type = type;
+    this.bytes = bytes;
+  }
+
+  public static BroadcastFrame of(Object message) {
+    if (message instanceof BroadcastFrame) {
+      return (BroadcastFrame) message;
+    }
+    if (message instanceof String) {
+      return new BroadcastFrame(TEXT, ((String) message).getBytes(UTF_8));
+    }
+    if (message instanceof byte[]) {
+      byte[] data = (byte[]) message;
+      return new BroadcastFrame(BINARY, Arrays.copyOf(data, data.length));
+    }
+    return new BroadcastFrame(TEXT, WebSocketJsonParser.INSTANCE.toJson(message));
+  }
+
+  @Override
+  public String type() {
+    return type;
+  }
+
+  @Override
+  public String text() {
+    return new String(bytes, UTF_8);
+  }
+
+  public int length() {
+    return bytes.length;
+  }
+
+  public ByteBuffer buffer() {
+    return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+  }
+
+  // Sessions are trusted not to modify the shared array
+  void sendTo(WebSocketSession session) throws IOException {
+    session.send(type, bytes);
+  }
+}
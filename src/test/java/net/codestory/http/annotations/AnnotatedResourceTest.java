@@ -27,6 +27,10 @@ import net.codestory.http.templating.ModelAndView;
 import net.codestory.http.testhelpers.AbstractProdWebServerTest;
 import org.junit.Test;
 
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
 public class AnnotatedResourceTest extends AbstractProdWebServerTest {
   @Test
   public void annotated_resources() {
@@ -38,6 +42,7 @@ public class AnnotatedResourceTest extends AbstractProdWebServerTest {
     get("/").should().contain("Hello");
     get("/bye/Bob").should().contain("Good Bye Bob");
     get("/add/22/20").should().haveType("application/json").contain("42");
+    get("/numbers").should().haveType("application/json").contain("[1,2,3]");
     get("/void").should().respond(200).haveType("text/html").contain("");
     get("/voidJson").should().respond(200).haveType("application/json").contain("");
     get("/1variable").should().respond(200).haveType("text/html").contain("Hello Bob");
@@ -71,6 +76,12 @@ public class AnnotatedResourceTest extends AbstractProdWebServerTest {
       return left + right;
     }
 
+    @Get("/numbers")
+    @StreamJson
+    public List<Integer> numbers() {
+      return asList(1, 2, 3);
+    }
+
     @Get("/void")
     public void empty() {
     }
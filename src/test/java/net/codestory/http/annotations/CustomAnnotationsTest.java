@@ -85,6 +85,24 @@ public class CustomAnnotationsTest extends AbstractProdWebServerTest {
     get("/").should().contain("Hello").haveHeader("theHeader", "theValue");
   }
 
+  @Test
+  public void around_and_after_annotations() {
+    UsersList users = new UsersList.Builder()
+      .addUser("user", "pwd")
+      .addUser("dummy", "pwd")
+      .build();
+
+    configure(routes -> routes
+        .filter(new BasicAuthFilter("/", "realm", users))
+        .registerAroundAnnotation(DummyShallNotPass.class, ShallNotPass.class)
+        .registerAfterAnnotation(Header.class, AddHeader.class)
+        .add(new MyResource())
+    );
+
+    get("/").withAuthentication("user", "pwd").should().contain("Hello").haveHeader("theHeader", "theValue");
+    get("/").withAuthentication("dummy", "pwd").should().respond(403).haveHeader("theHeader", "theValue");
+  }
+
   public static class ShallNotPass implements ApplyAroundAnnotation<DummyShallNotPass> {
     @Override
     public Payload apply(DummyShallNotPass annotation, Context context, Function<Context, Payload> payloadSupplier) {
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import net.codestory.http.*;
+import net.codestory.http.payload.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodAnnotationsBenchmark {
+  private final Payload payload = new Payload("Hello");
+  private final Function<Context, Payload> route = context -> payload;
+
+  private MethodAnnotations none;
+  private MethodAnnotations fiveStacked;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    MethodAnnotationsFactory factory = new MethodAnnotationsFactory();
+    factory.registerAroundAnnotation(First.class, () -> (annotation, context, payloadSupplier) -> payloadSupplier.apply(context));
+    factory.registerAroundAnnotation(Second.class, () -> (annotation, context, payloadSupplier) -> payloadSupplier.apply(context));
+    factory.registerAroundAnnotation(Third.class, () -> (annotation, context, payloadSupplier) -> payloadSupplier.apply(context));
+    factory.registerAfterAnnotation(Fourth.class, () -> (annotation, context, payload) -> payload);
+    factory.registerAfterAnnotation(Fifth.class, () -> (annotation, context, payload) -> payload);
+
+    none = factory.forMethod(Resource.class.getDeclaredMethod("none"));
+    fiveStacked = factory.forMethod(Resource.class.getDeclaredMethod("fiveStacked"));
+  }
+
+  @Benchmark
+  public Payload no_annotation() {
+    return none.apply(null, route);
+  }
+
+  @Benchmark
+  public Payload five_stacked_annotations() {
+    return fiveStacked.apply(null, route);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(MethodAnnotationsBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build()).run();
+  }
+
+  static class Resource {
+    void none() {
+    }
+
+    @First
+    @Second
+    @Third
+    @Fourth
+    @Fifth
+    void fiveStacked() {
+    }
+  }
+
+  @Target(METHOD)
+  @Retention(RUNTIME)
+  @interface First {
+  }
+
+  @Target(METHOD)
+  @Retention(RUNTIME)
+  @interface Second {
+  }
+
+  @Target(METHOD)
+  @Retention(RUNTIME)
+  @interface Third {
+  }
+
+  @Target(METHOD)
+  @Retention(RUNTIME)
+  @interface Fourth {
+  }
+
+  @Target(METHOD)
+  @Retention(RUNTIME)
+  @interface Fifth {
+  }
+}
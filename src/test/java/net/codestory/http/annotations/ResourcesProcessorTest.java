@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.annotations;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourcesProcessorTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void update_the_index_of_a_partial_build() throws Exception {
+    File sources = temp.newFolder("sources");
+    File classes = temp.newFolder("classes");
+    File first = source(sources, "First", "@net.codestory.http.annotations.Resource public class First {}");
+    File second = source(sources, "Second", "@net.codestory.http.annotations.Resource public class Second {}");
+
+    compile(classes, first, second);
+    assertThat(index(classes)).containsExactly("partial.First", "partial.Second");
+
+    source(sources, "First", "public class First {}");
+    compile(classes, first);
+    assertThat(index(classes)).containsExactly("partial.Second");
+  }
+
+  private static File source(File sources, String name, String body) throws IOException {
+    File file = new File(sources, name + ".java");
+    Files.write(file.toPath(), ("package partial;\n" + body).getBytes(UTF_8));
+    return file;
+  }
+
+  private static void compile(File classes, File... sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    String classPath = new File(Resource.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8)) {
+      List<String> options = asList("-d", classes.getPath(), "-classpath", classPath, "-processor", ResourcesProcessor.class.getName());
+      boolean compiled = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjects(sources)).call();
+      assertThat(compiled).isTrue();
+    }
+  }
+
+  private static List<String> index(File classes) throws IOException {
+    return Files.readAllLines(new File(classes, ResourcesProcessor.INDEX).toPath(), UTF_8);
+  }
+}
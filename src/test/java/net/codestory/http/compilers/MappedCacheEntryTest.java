@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.compilers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+public class MappedCacheEntryTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_from_mapping() throws IOException {
+    File file = temp.newFile();
+    Files.write(file.toPath(), "Hello".getBytes(UTF_8));
+
+    CacheEntry entry = CacheEntry.mapped(file);
+
+    assertThat(entry.content()).isEqualTo("Hello");
+    assertThat(entry.buffer().remaining()).isEqualTo(5);
+    assertThat(entry.etag()).isEqualTo("8b1a9953c4611296a827abf8c47804d7");
+  }
+
+  @Test
+  public void serialize_a_copy() throws Exception {
+    File file = temp.newFile();
+    Files.write(file.toPath(), "Hello".getBytes(UTF_8));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(CacheEntry.mapped(file));
+    }
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      CacheEntry copy = (CacheEntry) input.readObject();
+
+      assertThat(copy.content()).isEqualTo("Hello");
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.extensions;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import net.codestory.http.Context;
+import net.codestory.http.Request;
+import net.codestory.http.Response;
+import net.codestory.http.annotations.Get;
+import net.codestory.http.injection.IocAdapter;
+import net.codestory.http.misc.Env;
+import net.codestory.http.templating.Site;
+import net.codestory.http.testhelpers.AbstractProdWebServerTest;
+import org.junit.Test;
+
+public class CustomContextTest extends AbstractProdWebServerTest {
+  @Test
+  public void extract_parameters_with_custom_context() {
+    configure(routes -> routes
+      .add(GreetingResource.class)
+      .setExtensions(new Extensions() {
+        @Override
+        public Context createContext(Request request, Response response, IocAdapter iocAdapter, Env env, Site site) {
+          return new CustomContext(request, response, iocAdapter, env, site);
+        }
+      }));
+
+    get("/greeting").should().contain("Hello World");
+  }
+
+  static class CustomContext extends Context {
+    CustomContext(Request request, Response response, IocAdapter iocAdapter, Env env, Site site) {
+      super(request, response, iocAdapter, env, site);
+    }
+
+    @Override
+    public Object extract(Type type) throws IOException {
+      if (type == Greeting.class) {
+        return new Greeting("Hello World");
+      }
+      return super.extract(type);
+    }
+  }
+
+  public static class GreetingResource {
+    @Get("/greeting")
+    public String greeting(Greeting greeting) {
+      return greeting.text;
+    }
+  }
+
+  static class Greeting {
+    final String text;
+
+    Greeting(String text) {
+      this.text = text;
+    }
+  }
+}
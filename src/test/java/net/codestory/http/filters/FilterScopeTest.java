@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.filters;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.*;
+
+public class FilterScopeTest {
+  @Test
+  public void all() {
+    assertThat(FilterScope.ALL.isAll()).isTrue();
+    assertThat(FilterScope.ALL.includes("/", "GET")).isTrue();
+    assertThat(FilterScope.ALL.includes("/any/uri.css", "POST")).isTrue();
+  }
+
+  @Test
+  public void none() {
+    assertThat(FilterScope.NONE.isAll()).isFalse();
+    assertThat(FilterScope.NONE.includes("/", "GET")).isFalse();
+  }
+
+  @Test
+  public void uri_prefixes() {
+    FilterScope scope = FilterScope.uriPrefixes("/secure/", "/admin/").excludingUriPrefixes("/admin/public/");
+
+    assertThat(scope.isAll()).isFalse();
+    assertThat(scope.includes("/secure/foo", "GET")).isTrue();
+    assertThat(scope.includes("/admin/", "GET")).isTrue();
+    assertThat(scope.includes("/admin/public/foo", "GET")).isFalse();
+    assertThat(scope.includes("/public", "GET")).isFalse();
+  }
+
+  @Test
+  public void methods() {
+    FilterScope scope = FilterScope.ALL.forMethods("POST", "PUT");
+
+    assertThat(scope.isAll()).isFalse();
+    assertThat(scope.includes("/", "POST")).isTrue();
+    assertThat(scope.includes("/", "GET")).isFalse();
+  }
+
+  @Test
+  public void extensions() {
+    FilterScope scope = FilterScope.ALL.excludingExtensions(".css", ".js");
+
+    assertThat(scope.isAll()).isFalse();
+    assertThat(scope.includes("/style.css", "GET")).isFalse();
+    assertThat(scope.includes("/index.html", "GET")).isTrue();
+  }
+
+  @Test
+  public void alternatives() {
+    FilterScope scope = FilterScope.uriPrefixes("/auth/").or(FilterScope.uriPrefixes("/").excludingExtensions(".css"));
+
+    assertThat(scope.includes("/auth/login.css", "GET")).isTrue();
+    assertThat(scope.includes("/style.css", "GET")).isFalse();
+    assertThat(scope.includes("/index.html", "GET")).isTrue();
+    assertThat(scope.or(FilterScope.ALL).isAll()).isTrue();
+  }
+}
@@ -97,6 +97,42 @@ public class FilterTest extends AbstractProdWebServerTest {
     get("/").should().contain("FILTER1>FILTER2>NOT FILTERED");
   }
 
+  @Test
+  public void scoped_filters_are_skipped_out_of_scope() {
+    configure(routes -> routes
+        .get("/", "ROOT")
+        .get("/static/app.js", "APP")
+        .post("/", () -> "POSTED")
+        .filter(new Prefix("ALL>", FilterScope.ALL))
+        .filter(new Prefix("DYNAMIC>", FilterScope.ALL.excludingUriPrefixes("/static/")))
+        .filter(new Prefix("POST>", FilterScope.ALL.forMethods("POST")))
+    );
+
+    get("/").should().contain("ALL>DYNAMIC>ROOT");
+    get("/static/app.js").should().contain("ALL>APP");
+    post("/").should().contain("ALL>DYNAMIC>POST>POSTED");
+  }
+
+  public static class Prefix implements Filter {
+    private final String prefix;
+    private final FilterScope scope;
+
+    public Prefix(String prefix, FilterScope scope) {
+      this.prefix = prefix;
+      this.scope = scope;
+    }
+
+    @Override
+    public Payload apply(String uri, Context context, PayloadSupplier nextFilter) throws Exception {
+      return new Payload(prefix + nextFilter.get().rawContent());
+    }
+
+    @Override
+    public FilterScope scope() {
+      return scope;
+    }
+  }
+
   public static class CatchAll implements Filter {
     @Override
     public Payload apply(String uri, Context context, PayloadSupplier nextFilter) {
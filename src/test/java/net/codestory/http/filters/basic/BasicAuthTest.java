@@ -15,6 +15,7 @@
  */
 package net.codestory.http.filters.basic;
 
+import net.codestory.http.*;
 import net.codestory.http.filters.mixed.*;
 import net.codestory.http.security.*;
 import net.codestory.http.testhelpers.*;
@@ -84,4 +85,27 @@ public class BasicAuthTest extends AbstractProdWebServerTest {
     get("/secure").withPreemptiveAuthentication("Dave", "pwd").should().respond(200).haveType("text/html").contain("Hello Dave")
       .haveCookie("auth", null);
   }
+
+  @Test
+  public void secure_uris_matched_outside_of_the_declared_scope() {
+    configure(routes -> routes
+        .filter(new AdminAuthFilter(Users.forMap(singletonMap("jl", "polka"))))
+        .get("/secure", "Private")
+        .get("/admin", "Admin")
+    );
+
+    get("/admin").should().respond(401);
+    get("/admin").withAuthentication("jl", "polka").should().respond(200).contain("Admin");
+  }
+
+  public static class AdminAuthFilter extends BasicAuthFilter {
+    public AdminAuthFilter(Users users) {
+      super("/secure", "codestory", users);
+    }
+
+    @Override
+    public boolean matches(String uri, Context context) {
+      return super.matches(uri, context) || uri.startsWith("/admin");
+    }
+  }
 }
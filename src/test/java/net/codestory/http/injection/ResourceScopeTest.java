@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.injection;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.atomic.*;
+
+import net.codestory.http.annotations.*;
+import net.codestory.http.misc.*;
+import net.codestory.http.routes.*;
+import net.codestory.http.testhelpers.*;
+
+import org.junit.*;
+
+public class ResourceScopeTest extends AbstractProdWebServerTest {
+  @Before
+  public void resetCreations() {
+    Counter.CREATED.set(0);
+  }
+
+  @Test
+  public void default_adapter_creates_resources_on_first_request() {
+    CountingSingletons adapter = new CountingSingletons();
+    configure(routes -> routes
+        .setIocAdapter(adapter)
+        .add(Counter.class)
+    );
+
+    assertThat(Counter.CREATED.get()).isZero();
+
+    get("/count").should().contain("1");
+    get("/count").should().contain("2");
+    assertThat(Counter.CREATED.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void explicit_singleton_scope_creates_resources_when_configured() {
+    CountingSingletons adapter = new CountingSingletons();
+    configure(routes -> routes
+        .setIocAdapter(adapter)
+        .setResourceScope(ResourceScope.SINGLETON)
+        .add(Counter.class)
+    );
+
+    assertThat(Counter.CREATED.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void explicit_singleton_scope_fails_configuration_on_constructor_errors() {
+    Routes routes = new RouteCollection(Env.prod())
+        .setResourceScope(ResourceScope.SINGLETON)
+        .add(Failing.class);
+
+    assertThatThrownBy(() -> ((RouteCollection) routes).configure(r -> {}))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(Failing.class.getName());
+  }
+
+  @Test
+  public void other_adapters_resolve_resources_per_request() {
+    CountingAdapter adapter = new CountingAdapter(new NewInstances());
+    configure(routes -> routes
+        .setIocAdapter(adapter)
+        .add(Counter.class)
+    );
+
+    int resolutionsBeforeRequests = adapter.count.get();
+
+    get("/count").should().contain("1");
+    get("/count").should().contain("1");
+    assertResolutions(adapter.count, resolutionsBeforeRequests, 2);
+  }
+
+  @Test
+  public void explicit_per_request_scope() {
+    CountingSingletons adapter = new CountingSingletons();
+    configure(routes -> routes
+        .setIocAdapter(adapter)
+        .setResourceScope(ResourceScope.PER_REQUEST)
+        .add(Counter.class)
+    );
+
+    int resolutionsBeforeRequests = adapter.count.get();
+
+    get("/count").should().contain("1");
+    get("/count").should().contain("2");
+    assertResolutions(adapter.count, resolutionsBeforeRequests, 2);
+  }
+
+  @Test
+  public void explicit_singleton_scope() {
+    CountingAdapter adapter = new CountingAdapter(new NewInstances());
+    configure(routes -> routes
+        .setIocAdapter(adapter)
+        .setResourceScope(ResourceScope.SINGLETON)
+        .add(Counter.class)
+    );
+
+    int resolutionsBeforeRequests = adapter.count.get();
+
+    get("/count").should().contain("1");
+    get("/count").should().contain("2");
+    assertResolutions(adapter.count, resolutionsBeforeRequests, 0);
+  }
+
+  private static void assertResolutions(AtomicInteger count, int before, int expectedDuringRequests) {
+    Assert.assertEquals(expectedDuringRequests, count.get() - before);
+  }
+
+  public static class Counter {
+    static final AtomicInteger CREATED = new AtomicInteger();
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Counter() {
+      CREATED.incrementAndGet();
+    }
+
+    @Get("/count")
+    public int count() {
+      return count.incrementAndGet();
+    }
+  }
+
+  public static class Failing {
+    public Failing() {
+      throw new IllegalArgumentException("Failed");
+    }
+
+    @Get("/failing")
+    public String failing() {
+      return "";
+    }
+  }
+
+  static class CountingSingletons extends Singletons {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public synchronized <T> T get(Class<T> type) {
+      if (type == Counter.class) {
+        count.incrementAndGet();
+      }
+      return super.get(type);
+    }
+  }
+
+  static class CountingAdapter implements IocAdapter {
+    private final AtomicInteger count = new AtomicInteger();
+    private final IocAdapter delegate;
+
+    CountingAdapter(IocAdapter delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public <T> T get(Class<T> type) {
+      if (type == Counter.class) {
+        count.incrementAndGet();
+      }
+      return delegate.get(type);
+    }
+  }
+
+  static class NewInstances implements IocAdapter {
+    @Override
+    public <T> T get(Class<T> type) {
+      try {
+        return type.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
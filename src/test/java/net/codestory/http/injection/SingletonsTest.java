@@ -19,6 +19,8 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.mock;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
 
 import org.junit.*;
 import org.junit.rules.*;
@@ -107,14 +109,136 @@ public class SingletonsTest {
     assertThat(singletons.get(Cycle.class)).isSameAs(cycle);
   }
 
+  @Test
+  public void create_eagerly_in_parallel() {
+    Singletons singletons = new Singletons().withParallelEagerCreation();
+
+    singletons.createEagerly(Arrays.asList(Instance.class, OtherInstance.class, Singleton.class));
+
+    Instance instance = singletons.get(Instance.class);
+    OtherInstance otherInstance = singletons.get(OtherInstance.class);
+    assertThat(instance.singleton).isSameAs(otherInstance.singleton).isSameAs(singletons.get(Singleton.class));
+    assertThat(otherInstance.instance).isSameAs(instance);
+  }
+
+  @Test
+  public void create_eagerly_reports_cycles() {
+    Singletons singletons = new Singletons().withParallelEagerCreation();
+
+    thrown.expect(IllegalStateException.class);
+
+    singletons.createEagerly(Arrays.asList(Singleton.class, Cycle.class));
+  }
+
+  @Test(timeout = 5000)
+  public void create_eagerly_beans_that_get_other_beans() {
+    Singletons singletons = new Singletons().withParallelEagerCreation();
+
+    singletons.createEagerly(Arrays.asList(Lookup.class, OtherLookup.class, Singleton.class, Instance.class));
+
+    assertThat(singletons.get(Lookup.class).instance).isSameAs(singletons.get(OtherLookup.class).instance);
+  }
+
+  @Test
+  public void create_eagerly_reports_constructor_errors() {
+    Singletons singletons = new Singletons().withParallelEagerCreation();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to create instance of " + Failing.class + ". The constructor raised an exception");
+
+    singletons.createEagerly(Arrays.asList(Singleton.class, Failing.class, Lookup.class, OtherLookup.class));
+  }
+
+  @Test
+  public void concurrent_gets_share_the_same_singleton() {
+    Singletons singletons = new Singletons();
+
+    List<Object> instances = IntStream.range(0, 100).parallel().mapToObj(i -> singletons.get(Instance.class)).collect(Collectors.toList());
+
+    assertThat(new HashSet<>(instances)).hasSize(1);
+  }
+
+  @Test(timeout = 5000)
+  public void report_cycles_between_beans_created_by_different_threads() throws Exception {
+    Singletons singletons = new Singletons();
+    bothCreating = new CountDownLatch(2);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> first = executor.submit(() -> singletons.get(FirstOfCycle.class));
+      Future<?> second = executor.submit(() -> singletons.get(SecondOfCycle.class));
+
+      for (Future<?> creation : Arrays.asList(first, second)) {
+        try {
+          creation.get();
+          failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (ExecutionException e) {
+          assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  static CountDownLatch bothCreating;
+
+  static class FirstOfCycle {
+    public FirstOfCycle(Singletons singletons) throws InterruptedException {
+      bothCreating.countDown();
+      bothCreating.await();
+      singletons.get(SecondOfCycle.class);
+    }
+  }
+
+  static class SecondOfCycle {
+    public SecondOfCycle(Singletons singletons) throws InterruptedException {
+      bothCreating.countDown();
+      bothCreating.await();
+      singletons.get(FirstOfCycle.class);
+    }
+  }
+
   static class Singleton {
   }
 
+  static class OtherInstance {
+    Singleton singleton;
+    Instance instance;
+
+    public OtherInstance(Singleton singleton, Instance instance) {
+      this.singleton = singleton;
+      this.instance = instance;
+    }
+  }
+
   static class Cycle {
     public Cycle(Cycle cycle) {
     }
   }
 
+  static class Lookup {
+    Instance instance;
+
+    public Lookup(Singletons singletons) {
+      this.instance = singletons.get(Instance.class);
+    }
+  }
+
+  static class OtherLookup {
+    Instance instance;
+
+    public OtherLookup(Singletons singletons) {
+      this.instance = singletons.get(Instance.class);
+    }
+  }
+
+  static class Failing {
+    public Failing() {
+      throw new IllegalArgumentException("Failed");
+    }
+  }
+
   static class Private {
     private Private() {
     }
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.*;
+
+public class AssetCacheTest {
+  AssetCache cache = new AssetCache(100, 50);
+
+  @Test
+  public void keep_assets_in_memory() throws IOException {
+    AssetCache.Asset first = cache.get("a", 10, 1000, () -> bytes(10));
+    AssetCache.Asset second = cache.get("a", 10, 1000, () -> {
+      throw new IllegalStateException("Should be cached");
+    });
+
+    assertThat(second).isSameAs(first);
+    assertThat(first.etag()).isEqualTo("3e8-a");
+    assertThat(first.buffer().isDirect()).isTrue();
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(10);
+  }
+
+  @Test
+  public void reload_modified_assets() throws IOException {
+    cache.get("a", 10, 1000, () -> bytes(10));
+    AssetCache.Asset modified = cache.get("a", 20, 2000, () -> bytes(20));
+
+    assertThat(modified.length()).isEqualTo(20);
+    assertThat(cache.size()).isEqualTo(20);
+    assertThat(cache.count()).isEqualTo(1);
+  }
+
+  @Test
+  public void reject_large_assets() throws IOException {
+    assertThat(cache.get("large", 60, 1000, () -> bytes(60))).isNull();
+    assertThat(cache.rejectionCount()).isEqualTo(1);
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void keep_frequently_used_assets() throws IOException {
+    for (int i = 0; i < 5; i++) {
+      cache.get("hot1", 40, 1000, () -> bytes(40));
+      cache.get("hot2", 40, 1000, () -> bytes(40));
+    }
+
+    assertThat(cache.get("cold", 40, 1000, () -> bytes(40))).isNull();
+    assertThat(cache.count()).isEqualTo(2);
+    assertThat(cache.evictionCount()).isZero();
+  }
+
+  @Test
+  public void evict_least_recently_used_assets_for_more_frequent_ones() throws IOException {
+    cache.get("old1", 40, 1000, () -> bytes(40));
+    cache.get("old2", 40, 1000, () -> bytes(40));
+    for (int i = 0; i < 3; i++) {
+      cache.get("new", 40, 1000, () -> bytes(40));
+    }
+
+    assertThat(cache.count()).isEqualTo(2);
+    assertThat(cache.evictionCount()).isEqualTo(1);
+    assertThat(cache.get("old2", 40, 1000, () -> bytes(40))).isNotNull();
+    assertThat(cache.hitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void give_recently_read_assets_a_second_chance() throws IOException {
+    cache.get("old1", 40, 1000, () -> bytes(40));
+    cache.get("old2", 40, 1000, () -> bytes(40));
+    cache.get("old1", 40, 1000, () -> bytes(40));
+    cache.get("new", 40, 1000, () -> bytes(40));
+    cache.get("new", 40, 1000, () -> bytes(40));
+
+    assertThat(cache.evictionCount()).isEqualTo(1);
+    assertThat(cache.get("old1", 40, 1000, () -> {
+      throw new IllegalStateException("Should be cached");
+    })).isNotNull();
+  }
+
+  @Test
+  public void serve_assets_rejected_after_loading_from_the_heap() throws IOException {
+    AssetCache.Asset asset = cache.get("a", 10, 1000, () -> bytes(60));
+
+    assertThat(asset.length()).isEqualTo(60);
+    assertThat(asset.buffer().isDirect()).isFalse();
+    assertThat(asset.gzipped().isDirect()).isFalse();
+    assertThat(cache.rejectionCount()).isEqualTo(1);
+    assertThat(cache.count()).isZero();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void compress_once() throws IOException {
+    AssetCache.Asset asset = cache.get("a", 11, -1, () -> "Hello World".getBytes(UTF_8));
+
+    ByteBuffer gzipped = asset.gzipped();
+    byte[] bytes = new byte[gzipped.remaining()];
+    gzipped.get(bytes);
+
+    assertThat(gzipped.isDirect()).isTrue();
+    assertThat(asset.gzipped().remaining()).isEqualTo(bytes.length);
+    assertThat(InputStreams.readString(new GZIPInputStream(new ByteArrayInputStream(bytes)), UTF_8)).isEqualTo("Hello World");
+  }
+
+  @Test
+  public void keep_size_consistent_under_concurrent_requests() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> requests = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        int seed = thread;
+        requests.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            int length = 10 + ((i * 7 + seed) % 30);
+            cache.get("asset" + (length % 12), length, 1000, () -> bytes(length));
+          }
+          return null;
+        }));
+      }
+      for (Future<?> request : requests) {
+        request.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(cache.size()).isLessThanOrEqualTo(100);
+    assertThat(cache.hitCount() + cache.missCount()).isEqualTo(80_000);
+  }
+
+  @Test
+  public void sketch_counts_frequencies() {
+    AssetCache.FrequencySketch sketch = new AssetCache.FrequencySketch(16);
+
+    for (int i = 0; i < 20; i++) {
+      sketch.increment("hot");
+    }
+    sketch.increment("cold");
+
+    assertThat(sketch.frequency("hot")).isGreaterThan(sketch.frequency("cold"));
+    assertThat(sketch.frequency("hot")).isLessThanOrEqualTo(15);
+  }
+
+  private static byte[] bytes(int length) {
+    return new byte[length];
+  }
+}
@@ -15,11 +15,19 @@
  */
 package net.codestory.http.io;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
 import java.util.*;
 
+import net.codestory.http.annotations.*;
+import net.codestory.http.routes.indexed.*;
+
 import org.junit.*;
+import org.junit.rules.*;
 
 public class ClasspathScannerTest {
   static ClasspathScanner classpathScanner = new ClasspathScanner();
@@ -52,4 +60,38 @@ public class ClasspathScannerTest {
       .contains("META-INF/resources/webjars/fakewebjar/1.0/fake.js")
       .contains("META-INF/resources/webjars/jquery/1.11.1/jquery.js");
   }
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_indexed_types() {
+    Optional<Set<Class<?>>> types = classpathScanner.getIndexedTypes(ResourcesProcessor.INDEX, "net.codestory.http.routes.indexed");
+
+    assertThat(types).contains(Collections.singleton(IndexedResource.class));
+  }
+
+  @Test
+  public void ignore_indexes_when_a_root_with_the_package_has_none() {
+    assertThat(classpathScanner.getIndexedTypes(ResourcesProcessor.INDEX, "net.codestory.http")).isEmpty();
+  }
+
+  @Test
+  public void ignore_indexes_listing_missing_classes() throws IOException {
+    File root = temp.getRoot();
+    new File(root, "gone").mkdirs();
+    File index = new File(root, ResourcesProcessor.INDEX);
+    index.getParentFile().mkdirs();
+    Files.write(index.toPath(), "gone.Resource\n".getBytes(UTF_8));
+
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {root.toURI().toURL()}, previous)) {
+      thread.setContextClassLoader(classLoader);
+
+      assertThat(classpathScanner.getIndexedTypes(ResourcesProcessor.INDEX, "gone")).isEmpty();
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
 }
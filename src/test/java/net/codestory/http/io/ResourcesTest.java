@@ -18,12 +18,18 @@ package net.codestory.http.io;
 import static org.assertj.core.api.Assertions.*;
 
 import java.io.*;
+import java.net.*;
 import java.nio.file.*;
+import java.util.jar.*;
 
 import net.codestory.http.misc.Env;
 import org.junit.*;
+import org.junit.rules.*;
 
 public class ResourcesTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private static Resources resources = new Resources(Env.prod());
 
   @Test
@@ -48,4 +54,57 @@ public class ResourcesTest {
       .contains("src/main/resources/app/_layouts/default.html")
       .doesNotContain("target/classes/app/_layouts/default.html");
   }
+
+  @Test
+  public void index_resolves_uris_like_probing() {
+    Resources probing = new Resources(Env.prod(), null);
+
+    for (String uri : new String[] {"/", "/index", "/index.html", "/section", "/section/", "/posts/hello", "/goodbye", "/assets/style.css", "/missing", "_includes/partial", "section/", "//index.html", "/./assets/style.css", "/assets//style.css", "/section//", "/./"}) {
+      Path probed = probing.findExistingPath(uri);
+      assertThat(resources.findExistingPath(uri)).describedAs(uri).isEqualTo((probed == null) ? null : probed.normalize());
+    }
+  }
+
+  @Test
+  public void index_entries() {
+    ResourceIndex index = ResourceIndex.scan(new File("."), "app");
+
+    ResourceIndex.Entry entry = index.get("app/assets/style.css");
+    assertThat(entry.contentType()).isEqualTo("text/css;charset=UTF-8");
+    assertThat(entry.origin()).isEqualTo(ResourceIndex.Origin.CLASSPATH);
+    assertThat(entry.size()).isEqualTo(entry.file().length());
+    assertThat(index.contains("app/js")).isFalse();
+  }
+
+  @Test
+  public void index_jars_without_folder_entries() throws IOException {
+    File jar = temp.newFile("shaded.jar");
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+      output.putNextEntry(new JarEntry("app/shaded/hello.txt"));
+      output.write("Hello".getBytes());
+      output.closeEntry();
+    }
+
+    Thread thread = Thread.currentThread();
+    ClassLoader previous = thread.getContextClassLoader();
+    try (URLClassLoader classLoader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, previous)) {
+      thread.setContextClassLoader(classLoader);
+
+      ResourceIndex index = ResourceIndex.scan(temp.getRoot(), "app");
+
+      ResourceIndex.Entry entry = index.get("app/shaded/hello.txt");
+      assertThat(entry.origin()).isEqualTo(ResourceIndex.Origin.CLASSPATH);
+      assertThat(entry.size()).isEqualTo(5);
+      assertThat(index.findExistingPath("/shaded/hello.txt")).isEqualTo(Paths.get("/shaded/hello.txt"));
+    } finally {
+      thread.setContextClassLoader(previous);
+    }
+  }
+
+  @Test
+  public void share_the_index_of_an_env() {
+    Env env = Env.prod();
+
+    assertThat(env.resourceIndex()).isSameAs(env.resourceIndex());
+  }
 }
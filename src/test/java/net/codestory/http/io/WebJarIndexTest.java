@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.*;
+
+public class WebJarIndexTest {
+  static WebJarIndex index = WebJarIndex.scan();
+
+  @Test
+  public void list_webjar_files() {
+    assertThat(index.size()).isGreaterThan(0);
+    assertThat(index.contains("/webjars/bootstrap/3.3.5/js/bootstrap.js")).isTrue();
+    assertThat(index.contains("/webjars/bootstrap/3.3.5/js/")).isFalse();
+    assertThat(index.contains("/webjars/missing.js")).isFalse();
+  }
+
+  @Test
+  public void read_once_preferring_minified_version() {
+    AssetCache.Asset asset = index.get("/webjars/bootstrap/3.3.5/js/bootstrap.js");
+
+    assertThat(asset).isSameAs(index.get("/webjars/bootstrap/3.3.5/js/bootstrap.min.js"));
+    assertThat(content(asset.buffer())).contains("Bootstrap v3.3.5").doesNotContain("\n  ");
+  }
+
+  @Test
+  public void unknown_file() {
+    assertThat(index.get("/webjars/missing.js")).isNull();
+  }
+
+  private static String content(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
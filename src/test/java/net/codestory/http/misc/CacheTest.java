@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.misc;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class CacheTest {
+  AtomicInteger calls = new AtomicInteger();
+
+  String load(String key) {
+    calls.incrementAndGet();
+    return key.toUpperCase();
+  }
+
+  @Test
+  public void memoize() {
+    Cache<String, String> cache = new Cache<>(this::load);
+
+    assertThat(cache.apply("a")).isEqualTo("A");
+    assertThat(cache.apply("a")).isEqualTo("A");
+
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void bounded_size_keeps_recently_read_entries() {
+    Cache<String, String> cache = new Cache<>(this::load).withMaxSize(2);
+
+    cache.apply("a");
+    cache.apply("b");
+    cache.apply("a");
+    cache.apply("c");
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.evictionCount()).isEqualTo(1);
+
+    cache.apply("a");
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void bounded_weight() {
+    Cache<String, String> cache = new Cache<>(this::load).withMaxWeight(10, String::length);
+
+    cache.apply("aaaa");
+    cache.apply("bbbb");
+    cache.apply("cccc");
+
+    assertThat(cache.weight()).isEqualTo(8);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void expire_negative_entries() throws InterruptedException {
+    Cache<String, String> cache = new Cache<>(this::load).withNegativeExpiry(value -> value.isEmpty(), 10, MILLISECONDS);
+
+    cache.apply("");
+    cache.apply("a");
+    Thread.sleep(20);
+    cache.apply("");
+    cache.apply("a");
+
+    assertThat(calls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void expire_entries() throws InterruptedException {
+    Cache<String, String> cache = new Cache<>(this::load).withExpiry(10, MILLISECONDS);
+
+    cache.apply("a");
+    Thread.sleep(20);
+    cache.apply("a");
+
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void keep_the_weight_when_loading_fails() throws InterruptedException {
+    AtomicBoolean failing = new AtomicBoolean();
+    Cache<String, String> cache = new Cache<String, String>(key -> {
+      if (failing.get()) {
+        throw new IllegalStateException("Failed to load " + key);
+      }
+      return load(key);
+    }).withMaxWeight(10, String::length).withExpiry(10, MILLISECONDS);
+
+    cache.apply("aaaa");
+    Thread.sleep(20);
+    failing.set(true);
+
+    assertThatThrownBy(() -> cache.apply("aaaa")).isInstanceOf(IllegalStateException.class);
+    assertThat(cache.weight()).isEqualTo(4);
+
+    failing.set(false);
+    cache.apply("aaaa");
+    assertThat(cache.weight()).isEqualTo(4);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void load_other_keys_while_a_key_is_loading() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Cache<String, String> cache = new Cache<>(key -> {
+      if ("slow".equals(key)) {
+        loading.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return load(key);
+    });
+
+    Thread slow = new Thread(() -> cache.apply("slow"));
+    slow.start();
+    try {
+      loading.await();
+      for (int i = 0; i < 100; i++) {
+        assertThat(cache.apply("key" + i)).isEqualTo("KEY" + i);
+      }
+    } finally {
+      release.countDown();
+      slow.join();
+    }
+
+    assertThat(cache.size()).isEqualTo(101);
+  }
+}
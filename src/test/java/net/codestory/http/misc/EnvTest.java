@@ -170,4 +170,42 @@ public class EnvTest {
     assertThat(env.liveReloadServer()).isFalse();
     assertThat(env.diskCache()).isFalse();
   }
-}
\ No newline at end of file
+
+  @Test
+  public void fastEtag() {
+    Env env = Env.prod().withFastEtag(true);
+
+    assertThat(env.prodMode()).isTrue();
+    assertThat(env.gzip()).isTrue();
+    assertThat(env.diskCache()).isTrue();
+    assertThat(env.fastEtag()).isTrue();
+    assertThat(Env.prod().fastEtag()).isFalse();
+  }
+
+  @Test
+  public void asyncTimeout() {
+    Env env = Env.prod().withAsyncTimeout(5000);
+
+    assertThat(env.prodMode()).isTrue();
+    assertThat(env.asyncTimeout()).isEqualTo(5000);
+    assertThat(Env.prod().asyncTimeout()).isZero();
+  }
+
+  @Test
+  public void assetCacheSize() {
+    Env env = Env.prod().withAssetCacheSize(64);
+
+    assertThat(env.prodMode()).isTrue();
+    assertThat(env.assetCacheSize()).isEqualTo(64);
+    assertThat(Env.prod().assetCacheSize()).isZero();
+  }
+
+  @Test
+  public void jsonFlushBatchSize() {
+    Env env = Env.prod().withJsonFlushBatchSize(10);
+
+    assertThat(env.prodMode()).isTrue();
+    assertThat(env.jsonFlushBatchSize()).isEqualTo(10);
+    assertThat(Env.prod().jsonFlushBatchSize()).isEqualTo(100);
+  }
+}
@@ -15,13 +15,23 @@
  */
 package net.codestory.http.payload;
 
+import net.codestory.http.Request;
+import net.codestory.http.Response;
+import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.errors.NotFoundException;
+import net.codestory.http.extensions.Extensions;
+import net.codestory.http.io.Resources;
+import net.codestory.http.misc.Env;
+import net.codestory.http.templating.Site;
 import net.codestory.http.testhelpers.AbstractProdWebServerTest;
 import org.junit.Test;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class AsyncResponseTest extends AbstractProdWebServerTest {
   ExecutorService executorService = Executors.newSingleThreadExecutor();
@@ -53,6 +63,72 @@ public class AsyncResponseTest extends AbstractProdWebServerTest {
     get("/").should().respond(500);
   }
 
+  @Test
+  public void unwraps_errors() {
+    configure(routes -> routes.get("/", () -> future(() -> {
+      throw new NotFoundException();
+    })));
+
+    get("/").should().respond(404);
+  }
+
+  @Test
+  public void times_out() {
+    configure(routes -> routes.get("/", () -> new Payload(new CompletableFuture<String>()).withTimeout(50)));
+
+    get("/").should().respond(504);
+  }
+
+  @Test
+  public void times_out_on_the_completion_executor() {
+    AtomicReference<String> writingThread = new AtomicReference<>();
+    configure(routes -> routes
+      .setExtensions(new Extensions() {
+        @Override
+        public PayloadWriter createPayloadWriter(Request request, Response response, Env env, Site site, Resources resources, CompilerFacade compilers) {
+          return new PayloadWriter(request, response, env, site, resources, compilers) {
+            @Override
+            public void writeErrorPage(Throwable e) {
+              writingThread.set(Thread.currentThread().getName());
+              super.writeErrorPage(e);
+            }
+          };
+        }
+      })
+      .get("/", () -> new Payload(new CompletableFuture<String>()).withTimeout(50)));
+
+    get("/").should().respond(504);
+    assertThat(writingThread.get()).isEqualTo("async-completion");
+  }
+
+  @Test
+  public void completes_before_timeout() {
+    configure(routes -> routes.get("/", () -> new Payload(future(() -> "test")).withTimeout(5000)));
+
+    get("/").should().respond(200).contain("test");
+  }
+
+  @Test
+  public void service_unavailable_when_saturated() {
+    configure(routes -> routes
+      .setExtensions(new Extensions() {
+        @Override
+        public PayloadWriter createPayloadWriter(Request request, Response response, Env env, Site site, Resources resources, CompilerFacade compilers) {
+          return new PayloadWriter(request, response, env, site, resources, compilers) {
+            @Override
+            protected Executor completionExecutor() {
+              return command -> {
+                throw new RejectedExecutionException();
+              };
+            }
+          };
+        }
+      })
+      .get("/", () -> future(() -> "test")));
+
+    get("/").should().respond(503);
+  }
+
   static class Pojo {
     Pojo(String name) {
       this.name = name;
@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class ByteRangeTest {
+  @Test
+  public void ignore_invalid_headers() {
+    assertThat(ByteRange.parse(null, 100)).isNull();
+    assertThat(ByteRange.parse("items=0-1", 100)).isNull();
+    assertThat(ByteRange.parse("bytes=1", 100)).isNull();
+    assertThat(ByteRange.parse("bytes=5-2", 100)).isNull();
+    assertThat(ByteRange.parse("bytes=a-b", 100)).isNull();
+  }
+
+  @Test
+  public void single_range() {
+    List<ByteRange> ranges = ByteRange.parse("bytes=10-19", 100);
+
+    assertThat(ranges).hasSize(1);
+    assertThat(ranges.get(0).start).isEqualTo(10);
+    assertThat(ranges.get(0).end).isEqualTo(19);
+    assertThat(ranges.get(0).length()).isEqualTo(10);
+    assertThat(ranges.get(0).contentRange(100)).isEqualTo("bytes 10-19/100");
+  }
+
+  @Test
+  public void open_and_suffix_ranges() {
+    List<ByteRange> ranges = ByteRange.parse("bytes=90-, -5, 95-200", 100);
+
+    assertThat(ranges).extracting(range -> range.start).containsExactly(90L, 95L, 95L);
+    assertThat(ranges).extracting(range -> range.end).containsExactly(99L, 99L, 99L);
+  }
+
+  @Test
+  public void unsatisfiable_ranges() {
+    assertThat(ByteRange.parse("bytes=100-", 100)).isEmpty();
+    assertThat(ByteRange.parse("bytes=-0", 100)).isEmpty();
+  }
+}
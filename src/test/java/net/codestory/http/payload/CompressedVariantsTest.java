@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class CompressedVariantsTest {
+  @Test
+  public void compress_once() throws IOException {
+    CompressedVariants variants = new CompressedVariants(CompressedVariants.MAX_SIZE);
+    AtomicInteger reads = new AtomicInteger();
+
+    byte[] first = variants.get("hash", () -> read(reads, "Hello"));
+    byte[] second = variants.get("hash", () -> read(reads, "Hello"));
+
+    assertThat(second).isSameAs(first);
+    assertThat(reads.get()).isEqualTo(1);
+    assertThat(PayloadWriterTest.gunzip(first)).isEqualTo("Hello");
+  }
+
+  @Test
+  public void evict_least_recently_used() throws IOException {
+    byte[] compressed = CompressedVariants.gzip("Hello".getBytes(UTF_8), 9);
+    CompressedVariants variants = new CompressedVariants(2L * compressed.length);
+    AtomicInteger reads = new AtomicInteger();
+
+    variants.get("first", () -> read(reads, "Hello"));
+    variants.get("second", () -> read(reads, "Hello"));
+    variants.get("first", () -> read(reads, "Hello"));
+    variants.get("third", () -> read(reads, "Hello"));
+    variants.get("first", () -> read(reads, "Hello"));
+    variants.get("second", () -> read(reads, "Hello"));
+
+    assertThat(reads.get()).isEqualTo(4);
+  }
+
+  private static byte[] read(AtomicInteger reads, String content) {
+    reads.incrementAndGet();
+    return content.getBytes(UTF_8);
+  }
+}
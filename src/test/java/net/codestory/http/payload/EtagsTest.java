@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.codestory.http.misc.Md5;
+import org.junit.Test;
+
+public class EtagsTest {
+  Etags etags = new Etags();
+  AtomicInteger reads = new AtomicInteger();
+
+  DataSupplier data(String content) {
+    return () -> {
+      reads.incrementAndGet();
+      return content.getBytes(UTF_8);
+    };
+  }
+
+  @Test
+  public void hash_once() throws IOException {
+    assertThat(etags.get("app/index.html", 1000, 5, data("Hello"))).isEqualTo(Md5.of("Hello".getBytes(UTF_8)));
+    assertThat(etags.get("app/index.html", 1000, 5, data("Hello"))).isEqualTo(Md5.of("Hello".getBytes(UTF_8)));
+
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void rehash_when_the_size_changes() throws IOException {
+    etags.get("app/index.html", -1, 5, data("Hello"));
+
+    assertThat(etags.get("app/index.html", -1, 11, data("Hello World"))).isEqualTo(Md5.of("Hello World".getBytes(UTF_8)));
+    assertThat(reads.get()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EventHistoryTest {
+  EventHistory history = new EventHistory(3);
+
+  @Test
+  public void assign_sequential_ids() {
+    assertThat(history.record("A").id()).isEqualTo("0");
+    assertThat(history.record("B").id()).isEqualTo("1");
+    assertThat(history.record(ServerSentEvent.of("C").withId("custom")).id()).isEqualTo("custom");
+  }
+
+  @Test
+  public void replay_events_after_last_id() {
+    history.record("A");
+    history.record("B");
+    history.record("C");
+
+    assertThat(data(history.since("0"))).containsExactly("B", "C");
+    assertThat(data(history.since("2"))).isEmpty();
+  }
+
+  @Test
+  public void keep_last_events_only() {
+    history.record("A");
+    history.record("B");
+    history.record("C");
+    history.record("D");
+
+    assertThat(data(history.since("1"))).containsExactly("C", "D");
+    assertThat(data(history.since("0"))).containsExactly("B", "C", "D");
+  }
+
+  @Test
+  public void resume() {
+    history.record("A");
+    history.record("B");
+
+    assertThat(history.resume("0", Stream.of("LIVE")).map(item -> (item instanceof ServerSentEvent) ? ((ServerSentEvent) item).data() : item))
+      .containsExactly("B", "LIVE");
+    assertThat(history.resume(null, Stream.of("LIVE"))).containsExactly("LIVE");
+  }
+
+  private static List<Object> data(List<ServerSentEvent> events) {
+    return events.stream().map(ServerSentEvent::data).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import net.codestory.http.websockets.BroadcastFrame;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class EventStreamWriterTest {
+  ByteArrayOutputStream output = spy(new ByteArrayOutputStream());
+
+  @Test
+  public void data_only() {
+    try (EventStreamWriter events = new EventStreamWriter(output, 16, 1000, 1000)) {
+      events.write("MESSAGE");
+      events.write("LINE1\nLINE2\r\nLINE3\rLINE4\r");
+    }
+
+    assertThat(written()).isEqualTo("data: MESSAGE\n\ndata: LINE1\ndata: LINE2\ndata: LINE3\ndata: LINE4\ndata: \n\n");
+  }
+
+  @Test
+  public void json() {
+    try (EventStreamWriter events = new EventStreamWriter(output, 16, 1000, 1000)) {
+      events.write(new Message("Hello"));
+    }
+
+    assertThat(written()).isEqualTo("data: {\"text\":\"Hello\"}\n\n");
+  }
+
+  @Test
+  public void broadcast_frame() {
+    try (EventStreamWriter events = new EventStreamWriter(output, 16, 1000, 1000)) {
+      events.write(BroadcastFrame.of("LINE1\nLINE2"));
+    }
+
+    assertThat(written()).isEqualTo("data: LINE1\ndata: LINE2\n\n");
+  }
+
+  @Test
+  public void event_fields() {
+    try (EventStreamWriter events = new EventStreamWriter(output, 16, 1000, 1000)) {
+      events.write(ServerSentEvent.of("MESSAGE").withId("42").withEvent("update").withRetry(5000));
+    }
+
+    assertThat(written()).isEqualTo("id: 42\nevent: update\nretry: 5000\ndata: MESSAGE\n\n");
+  }
+
+  @Test
+  public void flush_in_batches() throws IOException {
+    try (EventStreamWriter events = new EventStreamWriter(output, 2, 1000, 1000)) {
+      events.write("1");
+      events.write("2");
+      events.write("3");
+
+      verify(output, times(1)).flush();
+    }
+
+    verify(output, times(2)).flush();
+  }
+
+  @Test
+  public void flush_slow_sources_after_a_delay() throws InterruptedException {
+    try (EventStreamWriter events = new EventStreamWriter(output, 100, 10, 1000)) {
+      events.write("MESSAGE");
+
+      Thread.sleep(200);
+      assertThat(written()).isEqualTo("data: MESSAGE\n\n");
+    }
+  }
+
+  @Test
+  public void heartbeat() throws InterruptedException {
+    try (EventStreamWriter events = new EventStreamWriter(output, 100, 10, 10)) {
+      Thread.sleep(200);
+    }
+
+    assertThat(written()).startsWith(":\n\n");
+  }
+
+  @Test
+  public void stalled_client_does_not_delay_other_streams() throws Exception {
+    CountDownLatch stalled = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    OutputStream blocking = new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+
+      @Override
+      public void flush() {
+        stalled.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+
+    EventStreamWriter stuck = new EventStreamWriter(blocking, 100, 10, 1000);
+    try {
+      stuck.write("MESSAGE");
+      assertThat(stalled.await(1, SECONDS)).isTrue();
+
+      try (EventStreamWriter events = new EventStreamWriter(output, 100, 10, 1000)) {
+        events.write("MESSAGE");
+
+        Thread.sleep(200);
+        assertThat(written()).isEqualTo("data: MESSAGE\n\n");
+      }
+    } finally {
+      release.countDown();
+      stuck.close();
+    }
+  }
+
+  @Test
+  public void detect_disconnection() throws IOException {
+    OutputStream failing = mock(OutputStream.class);
+    doThrow(new IOException("Broken pipe")).when(failing).flush();
+
+    try (EventStreamWriter events = new EventStreamWriter(failing, 1, 1000, 1000)) {
+      events.write("MESSAGE");
+
+      assertThat(events.isClosed()).isTrue();
+    }
+  }
+
+  private String written() {
+    return new String(output.toByteArray(), UTF_8);
+  }
+
+  static class Message {
+    public final String text;
+
+    Message(String text) {
+      this.text = text;
+    }
+  }
+}
@@ -19,23 +19,44 @@ import net.codestory.http.Cookie;
 import net.codestory.http.Cookies;
 import net.codestory.http.Request;
 import net.codestory.http.Response;
+import net.codestory.http.compilers.CacheEntry;
 import net.codestory.http.compilers.CompilerFacade;
+import net.codestory.http.convert.TypeConvert;
+import net.codestory.http.io.InputStreams;
 import net.codestory.http.io.Resources;
+import net.codestory.http.misc.Crc32;
 import net.codestory.http.misc.Env;
+import net.codestory.http.misc.Md5;
 import net.codestory.http.templating.Site;
+import net.codestory.http.websockets.Broadcast;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
@@ -57,6 +78,9 @@ public class PayloadWriterTest {
 
   PayloadWriter writer = new PayloadWriter(request, response, env, site, resources, compilerFacade);
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Before
   public void setupContext() throws IOException {
     when(request.cookies()).thenReturn(cookies);
@@ -90,6 +114,92 @@ public class PayloadWriterTest {
     verify(outputStream).write("{\"name\":\"NAME\",\"age\":42}".getBytes(UTF_8));
   }
 
+  @Test
+  public void stream_json() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(output);
+
+    writer.write(new Payload(new Person("NAME", 42)).withJsonStreaming());
+
+    verify(response).setStatus(200);
+    verify(response).setHeader(CONTENT_TYPE, "application/json;charset=UTF-8");
+    verify(response, never()).setHeader(eq(ETAG), anyString());
+    verify(response, never()).setContentLength(anyLong());
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("{\"name\":\"NAME\",\"age\":42}");
+  }
+
+  @Test
+  public void stream_ndjson() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(output);
+
+    writer.write(new Payload("application/x-ndjson", asList(new Person("Bob", 12), new Person("Joe", 42))));
+
+    verify(response).setHeader(CONTENT_TYPE, "application/x-ndjson");
+    verify(response, never()).setHeader(eq(ETAG), anyString());
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("{\"name\":\"Bob\",\"age\":12}\n{\"name\":\"Joe\",\"age\":42}\n");
+  }
+
+  @Test
+  public void stream_json_array_in_batches() throws IOException {
+    ByteArrayOutputStream output = spy(new ByteArrayOutputStream());
+    when(response.outputStream()).thenReturn(output);
+    Runnable closeHandler = mock(Runnable.class);
+
+    PayloadWriter batchWriter = new PayloadWriter(request, response, env.withJsonFlushBatchSize(2), site, resources, compilerFacade);
+    batchWriter.write(new Payload("application/json", Stream.of(1, 2, 3, 4, 5).onClose(closeHandler)));
+
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("[1,2,3,4,5]");
+    verify(output, times(3)).flush();
+    verify(closeHandler).run();
+  }
+
+  @Test
+  public void deliver_gzipped_json_batches_on_each_flush() throws Exception {
+    List<byte[]> flushed = new ArrayList<>();
+    ByteArrayOutputStream output = new ByteArrayOutputStream() {
+      @Override
+      public void flush() {
+        flushed.add(toByteArray());
+      }
+    };
+    when(response.outputStream()).thenReturn(output);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+
+    PayloadWriter prodWriter = new PayloadWriter(request, response, Env.prod().withJsonFlushBatchSize(2), site, resources, compilerFacade);
+    prodWriter.write(new Payload("application/json", Stream.of(1, 2, 3, 4, 5)));
+
+    assertThat(inflateSoFar(flushed.get(0))).isEqualTo("[1,2");
+    assertThat(gunzip(output.toByteArray())).isEqualTo("[1,2,3,4,5]");
+  }
+
+  // Skips the gzip header and inflates what has been sent so far
+  static String inflateSoFar(byte[] gzipped) throws DataFormatException {
+    Inflater inflater = new Inflater(true);
+    inflater.setInput(gzipped, 10, gzipped.length - 10);
+    byte[] buffer = new byte[1024];
+    int length = inflater.inflate(buffer);
+    return new String(buffer, 0, length, UTF_8);
+  }
+
+  @Test
+  public void serve_cached_assets() throws IOException {
+    Env prod = Env.prod().withAssetCacheSize(1);
+    Resources cachingResources = new Resources(prod);
+    when(response.channel()).thenReturn(Channels.newChannel(new ByteArrayOutputStream()));
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("");
+
+    PayloadWriter first = new PayloadWriter(request, response, prod, site, cachingResources, compilerFacade);
+    first.write(new Payload(Paths.get("assets/style.css")));
+    PayloadWriter second = new PayloadWriter(request, response, prod, site, cachingResources, compilerFacade);
+    second.write(new Payload(Paths.get("assets/style.css")));
+
+    File file = cachingResources.existingFile(Paths.get("assets/style.css"));
+    verify(response, times(2)).setHeader(ETAG, Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length()));
+    assertThat(cachingResources.assetCache().missCount()).isEqualTo(1);
+    assertThat(cachingResources.assetCache().hitCount()).isEqualTo(1);
+  }
+
   @Test
   public void support_custom_content_type() throws IOException {
     writer.write(new Payload("text/plain", "Hello"));
@@ -116,7 +226,13 @@ public class PayloadWriterTest {
     Runnable closeHandler = mock(Runnable.class);
     doThrow(IOException.class).when(outputStream).write(any(byte[].class), anyInt(), anyInt());
 
-    writer.writeEventStream(new Payload(Stream.iterate(1, i -> i + 1)
+    PayloadWriter unbatchedWriter = new PayloadWriter(request, response, env, site, resources, compilerFacade) {
+      @Override
+      protected int eventBatchSize() {
+        return 1;
+      }
+    };
+    unbatchedWriter.writeEventStream(new Payload(Stream.iterate(1, i -> i + 1)
       .peek(i -> {
         if (i > 1) throw new RuntimeException("It should never reach that point");
       })
@@ -125,6 +241,22 @@ public class PayloadWriterTest {
     verify(closeHandler).run();
   }
 
+  @Test(timeout = 5000)
+  public void end_quiet_broadcast_stream_when_client_disconnects() throws IOException {
+    doThrow(IOException.class).when(outputStream).flush();
+    Broadcast broadcast = new Broadcast();
+
+    PayloadWriter heartbeatWriter = new PayloadWriter(request, response, env, site, resources, compilerFacade) {
+      @Override
+      protected long heartbeatDelay() {
+        return 10;
+      }
+    };
+    heartbeatWriter.writeEventStream(new Payload(broadcast.stream("quiet")));
+
+    assertThat(broadcast.subscriberCount("quiet")).isZero();
+  }
+
   @Test
   public void support_present_optional() throws IOException {
     writer.write(new Payload("text/plain", Optional.of("TEXT")));
@@ -211,6 +343,46 @@ public class PayloadWriterTest {
     verify(response).setHeader("ETag", "8b1a9953c4611296a827abf8c47804d7");
   }
 
+  @Test
+  public void fast_etag() throws IOException {
+    PayloadWriter fastEtagWriter = new PayloadWriter(request, response, Env.dev().withFastEtag(true), site, resources, compilerFacade);
+
+    fastEtagWriter.write(new Payload(new Person("Bob", 42)));
+
+    verify(response).setHeader("ETag", Crc32.of(TypeConvert.toByteArray(new Person("Bob", 42))));
+  }
+
+  @Test
+  public void compiled_etag_is_computed_once() throws IOException {
+    CacheEntry entry = CacheEntry.fromString("body {}");
+    when(response.channel()).thenReturn(Channels.newChannel(new ByteArrayOutputStream()));
+
+    writer.write(new Payload(entry));
+
+    verify(response).setHeader("ETag", Md5.of("body {}".getBytes(UTF_8)));
+    assertThat(entry.etag()).isSameAs(entry.etag());
+
+    CacheEntry uncached = CacheEntry.noCache("body {}");
+    assertThat(uncached.etag()).isSameAs(uncached.etag());
+  }
+
+  @Test
+  public void write_mapped_entry_from_its_buffer() throws IOException {
+    File file = temp.newFile("compiled.css");
+    Files.write(file.toPath(), "body {}".getBytes(UTF_8));
+    CacheEntry entry = CacheEntry.mapped(file);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(output));
+
+    writer.write(new Payload("text/css", entry));
+
+    verify(response).setHeader("ETag", Md5.of("body {}".getBytes(UTF_8)));
+    verify(response).setContentLength(7);
+    verify(outputStream, never()).write(any(byte[].class));
+    assertThat(entry.buffer().isDirect()).isTrue();
+    assertThat(new String(output.toByteArray(), UTF_8)).isEqualTo("body {}");
+  }
+
   @Test
   public void not_modified() throws IOException {
     when(request.header("If-None-Match")).thenReturn("8b1a9953c4611296a827abf8c47804d7");
@@ -221,6 +393,119 @@ public class PayloadWriterTest {
     verify(response).setStatus(NOT_MODIFIED);
   }
 
+  @Test
+  public void transfer_file_from_its_channel() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(output));
+
+    Path path = Paths.get("assets/style.css");
+    File file = resources.existingFile(path);
+
+    writer.write(new Payload(path));
+
+    verify(response).setStatus(OK);
+    verify(response).setHeader(CONTENT_TYPE, "text/css;charset=UTF-8");
+    verify(response).setHeader(ETAG, Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length()));
+    verify(response).setContentLength(file.length());
+    verify(response, never()).outputStream();
+    assertThat(output.toByteArray()).isEqualTo(Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void file_not_modified() throws IOException {
+    Path path = Paths.get("assets/style.css");
+    File file = resources.existingFile(path);
+    when(request.header("If-None-Match")).thenReturn(Long.toHexString(file.lastModified()) + '-' + Long.toHexString(file.length()));
+
+    writer.write(new Payload(path));
+
+    verify(response).setStatus(NOT_MODIFIED);
+    verify(response, never()).channel();
+  }
+
+  @Test
+  public void gzip_with_content_length() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(output);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip, deflate");
+
+    PayloadWriter prodWriter = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+    prodWriter.write(new Payload("Hello"));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setContentLength(output.size());
+    assertThat(gunzip(output.toByteArray())).isEqualTo("Hello");
+  }
+
+  @Test
+  public void serve_precompressed_sibling_file() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.channel()).thenReturn(Channels.newChannel(output));
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+
+    File file = temp.newFile("app.js");
+    Files.write(file.toPath(), "uncompressed".getBytes(UTF_8));
+    File precompressed = temp.newFile("app.js.gz");
+    try (GZIPOutputStream gzip = new GZIPOutputStream(new FileOutputStream(precompressed))) {
+      gzip.write("precompressed".getBytes(UTF_8));
+    }
+
+    PayloadWriter prodWriter = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+    prodWriter.write(new Payload(file));
+
+    verify(response).setHeader(CONTENT_ENCODING, "gzip");
+    verify(response).setContentLength(precompressed.length());
+    assertThat(gunzip(output.toByteArray())).isEqualTo("precompressed");
+  }
+
+  @Test
+  public void ignore_precompressed_sibling_file_in_dev_mode() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(output);
+
+    File file = temp.newFile("app.js");
+    Files.write(file.toPath(), "uncompressed".getBytes(UTF_8));
+    File precompressed = temp.newFile("app.js.gz");
+    try (GZIPOutputStream gzip = new GZIPOutputStream(new FileOutputStream(precompressed))) {
+      gzip.write("precompressed".getBytes(UTF_8));
+    }
+
+    PayloadWriter gzipWriter = new PayloadWriter(request, response, Env.dev(), site, resources, compilerFacade) {
+      @Override
+      protected boolean shouldGzip() {
+        return true;
+      }
+    };
+    gzipWriter.write(new Payload(file));
+
+    assertThat(gunzip(output.toByteArray())).isEqualTo("uncompressed");
+  }
+
+  @Test
+  public void recompress_modified_files_with_a_fixed_etag() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    when(response.outputStream()).thenReturn(output);
+    when(request.header(ACCEPT_ENCODING, "")).thenReturn("gzip");
+    PayloadWriter prodWriter = new PayloadWriter(request, response, Env.prod(), site, resources, compilerFacade);
+
+    File file = temp.newFile("app.css");
+    Files.write(file.toPath(), "body {}".getBytes(UTF_8));
+    prodWriter.write(new Payload(file).withHeader(ETAG, "fixed"));
+
+    output.reset();
+    Files.write(file.toPath(), "body { color: red }".getBytes(UTF_8));
+    file.setLastModified(file.lastModified() + 2000);
+    prodWriter.write(new Payload(file).withHeader(ETAG, "fixed"));
+
+    assertThat(gunzip(output.toByteArray())).isEqualTo("body { color: red }");
+  }
+
+  static String gunzip(byte[] compressed) throws IOException {
+    try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return new String(InputStreams.readBytes(input), UTF_8);
+    }
+  }
+
   @Test
   public void head() throws IOException {
     when(request.method()).thenReturn("HEAD");
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.payload;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class PublisherWriterTest {
+  ByteArrayOutputStream output = new ByteArrayOutputStream();
+  Runnable onEnd = mock(Runnable.class);
+  Runnable onAbort = mock(Runnable.class);
+
+  @Test
+  public void ndjson() throws IOException {
+    PublisherWriter.subscribe(new Range(3), output, "application/x-ndjson", 2, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(written()).isEqualTo("1\n2\n3\n");
+    verify(onEnd).run();
+  }
+
+  @Test
+  public void json_array() throws IOException {
+    PublisherWriter.subscribe(new Range(3), output, "application/json", 2, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(written()).isEqualTo("[1,2,3]");
+    verify(onEnd).run();
+  }
+
+  @Test
+  public void server_sent_events() throws IOException {
+    PublisherWriter.subscribe(new Range(2), output, "text/event-stream;charset=UTF-8", 2, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(written()).isEqualTo("data: 1\n\ndata: 2\n\n");
+    verify(onEnd).run();
+  }
+
+  @Test
+  public void request_a_batch_once_the_previous_one_is_written() throws IOException {
+    Range range = new Range(10);
+    List<Integer> writtenWhenRequested = new ArrayList<>();
+    range.onRequest = () -> writtenWhenRequested.add(output.size());
+
+    PublisherWriter.subscribe(range, output, "application/x-ndjson", 4, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(range.requests).containsExactly(4L, 4L, 4L);
+    assertThat(writtenWhenRequested).containsExactly(0, 8, 16);
+    assertThat(written()).isEqualTo("1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n");
+  }
+
+  @Test
+  public void cancel_when_the_client_is_gone() throws IOException {
+    OutputStream failing = mock(OutputStream.class);
+    doThrow(new IOException("Broken pipe")).when(failing).flush();
+    Range range = new Range(100);
+
+    PublisherWriter.subscribe(range, failing, "application/x-ndjson", 4, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(range.cancelled).isTrue();
+    assertThat(range.requests).containsExactly(4L);
+    verify(onEnd).run();
+  }
+
+  @Test
+  public void abort_failed_streams_without_ending_the_body() throws IOException {
+    Range range = new Range(3);
+    range.error = new IllegalStateException("Failed");
+
+    PublisherWriter.subscribe(range, output, "application/json", 2, 1000, Runnable::run, onEnd, onAbort);
+
+    assertThat(written()).isEqualTo("[1,2,3");
+    verify(onAbort).run();
+    verify(onEnd, never()).run();
+  }
+
+  private String written() {
+    return new String(output.toByteArray(), UTF_8);
+  }
+
+  // Emits 1..count, on demand
+  static class Range implements Publisher<Integer> {
+    final int count;
+    final List<Long> requests = new ArrayList<>();
+    Runnable onRequest = () -> {
+    };
+    boolean cancelled;
+    Throwable error;
+
+    Range(int count) {
+      this.count = count;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Integer> subscriber) {
+      subscriber.onSubscribe(new Subscription() {
+        long demand;
+        int next = 1;
+        boolean emitting;
+
+        @Override
+        public void request(long n) {
+          requests.add(n);
+          onRequest.run();
+
+          demand += n;
+          if (emitting) {
+            return;
+          }
+
+          emitting = true;
+          while ((demand > 0) && (next <= count) && !cancelled) {
+            demand--;
+            subscriber.onNext(next++);
+          }
+          if ((next > count) && !cancelled) {
+            cancelled = true;
+            if (error != null) {
+              subscriber.onError(error);
+            } else {
+              subscriber.onComplete();
+            }
+          }
+          emitting = false;
+        }
+
+        @Override
+        public void cancel() {
+          cancelled = true;
+        }
+      });
+    }
+  }
+}
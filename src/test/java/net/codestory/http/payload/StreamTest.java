@@ -19,6 +19,7 @@ import net.codestory.http.testhelpers.AbstractProdWebServerTest;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
@@ -57,6 +58,19 @@ public class StreamTest extends AbstractProdWebServerTest {
     get("/events").should().contain("data: MESSAGE\ndata: 1\n\n" + "data: MESSAGE\ndata: 2\n\n" + "data: MESSAGE\ndata: 3\n\n");
   }
 
+  @Test
+  public void publisher() {
+    configure(routes -> routes
+        .get("/events", () -> new PublisherWriterTest.Range(3))
+        .get("/ndjson", () -> new Payload("application/x-ndjson", new PublisherWriterTest.Range(3)))
+        .get("/async", () -> CompletableFuture.supplyAsync(() -> new PublisherWriterTest.Range(3)))
+    );
+
+    get("/events").should().haveType("text/event-stream").contain("data: 1\n\n" + "data: 2\n\n" + "data: 3\n\n");
+    get("/ndjson").should().haveType("application/x-ndjson").contain("1\n2\n3\n");
+    get("/async").should().haveType("text/event-stream").contain("data: 1\n\n" + "data: 2\n\n" + "data: 3\n\n");
+  }
+
   @Test
   public void byte_stream() {
     configure(routes -> routes
@@ -52,6 +52,22 @@ public class BoundFolderTest extends AbstractProdWebServerTest {
     get("/special/../private.txt").should().respond(404);
   }
 
+  @Test
+  public void serve_ranges() throws IOException {
+    File uploads = temp.newFolder("uploads");
+    write(new File(uploads, "digits.txt"), "0123456789");
+
+    configure(routes -> routes
+        .bind("/uploads", uploads));
+
+    get("/uploads/digits.txt").should().respond(200).contain("0123456789").haveHeader("Accept-Ranges", "bytes");
+    get("/uploads/digits.txt").withHeader("Range", "bytes=2-4").should().respond(206).contain("234").haveHeader("Content-Range", "bytes 2-4/10");
+    get("/uploads/digits.txt").withHeader("Range", "bytes=-3").should().respond(206).contain("789").haveHeader("Content-Range", "bytes 7-9/10");
+    get("/uploads/digits.txt").withHeader("Range", "bytes=1-2,8-").should().respond(206).haveType("multipart/byteranges").contain("Content-Range: bytes 1-2/10\r\n\r\n12").contain("Content-Range: bytes 8-9/10\r\n\r\n89");
+    get("/uploads/digits.txt").withHeader("Range", "bytes=20-").should().respond(416).haveHeader("Content-Range", "bytes */10");
+    get("/uploads/digits.txt").withHeader("Range", "bytes=2-4").withHeader("If-Range", "\"outdated\"").should().respond(200).contain("0123456789");
+  }
+
   static void write(File file, String content) throws IOException {
     Files.write(file.toPath(), content.getBytes(UTF_8));
   }
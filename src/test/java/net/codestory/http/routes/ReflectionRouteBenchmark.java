@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionRouteBenchmark {
+  private final Resource resource = new Resource();
+  private final Object[] arguments = {"Bob", 42};
+
+  private Method method;
+  private MethodHandle invoker;
+
+  @Setup
+  public void setup() throws NoSuchMethodException {
+    method = Resource.class.getDeclaredMethod("hello", String.class, int.class);
+    invoker = ReflectionRoute.invoker(method);
+  }
+
+  @Benchmark
+  public Object reflection() throws Exception {
+    if (!method.isAccessible()) {
+      method.setAccessible(true);
+    }
+    return method.invoke(resource, arguments);
+  }
+
+  @Benchmark
+  public Object method_handle() throws Throwable {
+    return invoker.invokeExact((Object) resource, arguments);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(ReflectionRouteBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+
+  private static class Resource {
+    private String hello(String name, int age) {
+      return name;
+    }
+  }
+}
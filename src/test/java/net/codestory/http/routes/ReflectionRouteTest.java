@@ -23,7 +23,10 @@ import net.codestory.http.*;
 import org.junit.*;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Type;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class ReflectionRouteTest {
   Context context = mock(Context.class);
@@ -46,4 +49,50 @@ public class ReflectionRouteTest {
 
     assertThat(parameters).containsExactly("param", request);
   }
+
+  @Test
+  public void convert_path_parameters() throws IOException {
+    UUID uuid = UUID.randomUUID();
+
+    Object[] parameters = ReflectionRoute.convert(context, new String[]{"42", "-7", uuid.toString(), "true", "1.5"}, int.class, Long.class, UUID.class, boolean.class, double.class);
+
+    assertThat(parameters).containsExactly(42, -7L, uuid, true, 1.5);
+  }
+
+  @Test
+  public void convert_missing_path_parameters() throws IOException {
+    Object[] parameters = ReflectionRoute.convert(context, new String[]{null, null, null}, int.class, Integer.class, String.class);
+
+    assertThat(parameters).containsExactly(0, null, null);
+  }
+
+  @Test
+  public void convert_other_path_parameters_with_object_mapper() throws IOException {
+    Object[] parameters = ReflectionRoute.convert(context, new String[]{"SECONDS"}, TimeUnit.class);
+
+    assertThat(parameters).containsExactly(TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void invoke_method() throws Throwable {
+    MethodHandle invoker = ReflectionRoute.invoker(Resource.class.getDeclaredMethod("hello", String.class, int.class));
+
+    assertThat(invoker.invokeExact((Object) new Resource(), new Object[]{"Bob", 42})).isEqualTo("Bob 42");
+  }
+
+  @Test
+  public void invoke_void_method() throws Throwable {
+    MethodHandle invoker = ReflectionRoute.invoker(Resource.class.getDeclaredMethod("nothing"));
+
+    assertThat(invoker.invokeExact((Object) new Resource(), new Object[0])).isNull();
+  }
+
+  private static class Resource {
+    private String hello(String name, int age) {
+      return name + " " + age;
+    }
+
+    void nothing() {
+    }
+  }
 }
@@ -17,11 +17,15 @@ package net.codestory.http.routes;
 
 import net.codestory.http.annotations.Get;
 import net.codestory.http.annotations.Resource;
+import net.codestory.http.io.ClasspathScanner;
 import net.codestory.http.misc.Env;
+import net.codestory.http.routes.indexed.IndexedResource;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.File;
+
 import static org.mockito.Mockito.*;
 
 public class RouteCollectionTest {
@@ -55,6 +59,48 @@ public class RouteCollectionTest {
     verify(routeCollection).add(StubResource.class);
   }
 
+  @Test
+  public void use_resources_index_in_prod_mode() {
+    Env env = mock(Env.class);
+    when(env.prodMode()).thenReturn(true);
+    when(env.workingDir()).thenReturn(new File("."));
+    when(env.appFolder()).thenReturn("app");
+    ClasspathScanner scanner = spy(new ClasspathScanner());
+    RouteCollection routeCollection = spy(new RouteCollection(env));
+    doReturn(scanner).when(routeCollection).classpathScanner();
+
+    routeCollection.autoDiscover("net.codestory.http.routes.indexed");
+
+    verify(routeCollection).add(IndexedResource.class);
+    verify(scanner, never()).getTypesAnnotatedWith(anyString(), any());
+  }
+
+  @Test
+  public void scan_packages_not_covered_by_an_index_in_prod_mode() {
+    Env env = mock(Env.class);
+    when(env.prodMode()).thenReturn(true);
+    when(env.workingDir()).thenReturn(new File("."));
+    when(env.appFolder()).thenReturn("app");
+    ClasspathScanner scanner = spy(new ClasspathScanner());
+    RouteCollection routeCollection = spy(new RouteCollection(env));
+    doReturn(scanner).when(routeCollection).classpathScanner();
+
+    // Main classes are compiled without the processor
+    routeCollection.autoDiscover("net.codestory.http");
+
+    verify(routeCollection).add(StubResource.class);
+    verify(scanner).getTypesAnnotatedWith("net.codestory.http", Resource.class);
+  }
+
+  @Test
+  public void generated_configuration() {
+    Routes routes = mock(Routes.class);
+
+    new GeneratedRoutesConfiguration().configure(routes);
+
+    verify(routes).add(StubResource.class);
+  }
+
   @Resource
   public static class StubResource {
     @Get("/test")
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import static net.codestory.http.constants.Methods.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.*;
+
+import net.codestory.http.*;
+import net.codestory.http.payload.*;
+
+import org.junit.*;
+
+public class RouteIndexTest {
+  private final RouteSorter sorter = new RouteSorter();
+
+  @Test
+  public void same_candidates_as_linear_scan() {
+    String[] patterns = {"/", "/foo", "/foo/", "/foo/bar", "/:param", "/foo/:param", "/:param/foo", "/foo/:param/:param/qix",
+      "/foo/:param/bar/:param", "/end/:param:", "/end/:param", "/with/:param/in/:url:", "/hello/:name?opt=:option", "/hello/:name/last"};
+    String[] methods = {GET, POST, HEAD, DELETE};
+    for (int i = 0; i < patterns.length; i++) {
+      add(methods[i % methods.length], patterns[i]);
+      add(PUT, patterns[i]);
+    }
+    Route[] sortedRoutes = sorter.getSortedRoutes();
+    RouteIndex index = new RouteIndex(sortedRoutes);
+
+    String[] uris = {"", "/", "/foo", "/foo/", "/foo/bar", "/bar", "/foo/bar/baz", "/qix/foo", "/foo/a/b/qix", "/foo/a/bar/b",
+      "/end", "/end/", "/end/a", "/with", "/end/a/b/c", "/with/x/in/the/middle", "/with/x/in/", "/hello/", "/hello/Bob", "/hello/Bob?opt=1",
+      "/hello//last", "//foo", "/foo?a/b"};
+    for (String uri : uris) {
+      for (String method : new String[] {GET, HEAD, POST, PUT, OPTIONS}) {
+        List<Integer> expected = new ArrayList<>();
+        boolean uriMatched = false;
+        for (int position = 0; position < sortedRoutes.length; position++) {
+          if (sortedRoutes[position].matchUri(uri)) {
+            uriMatched = true;
+            if (sortedRoutes[position].matchMethod(method)) {
+              expected.add(position);
+            }
+          }
+        }
+
+        RouteIndex.Match match = index.find(uri, method);
+        List<Integer> actual = new ArrayList<>();
+        for (int i = 0; i < match.size(); i++) {
+          actual.add(match.get(i));
+        }
+
+        assertThat(actual).describedAs(method + " " + uri).isEqualTo(expected);
+        assertThat(match.allowed() != 0).describedAs(method + " " + uri).isEqualTo(uriMatched);
+      }
+    }
+  }
+
+  @Test
+  public void fixed_route_comes_first() throws Exception {
+    add(GET, "/:param", "Param");
+    add(GET, "/foo", "Fixed");
+
+    assertThat(get(GET, "/foo").rawContent()).isEqualTo("Fixed");
+    assertThat(get(GET, "/bar").rawContent()).isEqualTo("Param");
+  }
+
+  @Test
+  public void method_not_allowed() throws Exception {
+    add(GET, "/foo", "Get");
+    add(POST, "/bar", "Post");
+
+    assertThat(get(POST, "/foo").code()).isEqualTo(405);
+    assertThat(get(POST, "/foo").headers()).containsEntry("Allow", "GET, HEAD, OPTIONS");
+    assertThat(get(HEAD, "/foo").code()).isEqualTo(200);
+    assertThat(get(GET, "/qix").code()).isEqualTo(404);
+  }
+
+  @Test
+  public void automatic_options() throws Exception {
+    add(GET, "/foo", "Get");
+    add(DELETE, "/:param", "Delete");
+    add(OPTIONS, "/bar", "Options");
+
+    assertThat(get(OPTIONS, "/foo").code()).isEqualTo(200);
+    assertThat(get(OPTIONS, "/foo").headers()).containsEntry("Allow", "GET, HEAD, DELETE, OPTIONS");
+    assertThat(get(OPTIONS, "/bar").rawContent()).isEqualTo("Options");
+    assertThat(get(OPTIONS, "/qix/foo").code()).isEqualTo(404);
+  }
+
+  @Test
+  public void fallback_to_unindexed_routes() throws Exception {
+    add(POST, "/foo", "Post");
+    sorter.addCatchAllRoute(new CatchAllRoute(GET, (NoParamRouteWithContext) context -> "Any"));
+
+    assertThat(get(GET, "/foo").rawContent()).isEqualTo("Any");
+    assertThat(get(GET, "/qix").rawContent()).isEqualTo("Any");
+    assertThat(get(POST, "/foo").rawContent()).isEqualTo("Post");
+  }
+
+  private void add(String method, String pattern) {
+    add(method, pattern, pattern);
+  }
+
+  private void add(String method, String pattern, String body) {
+    sorter.addUserRoute(new RouteWithPattern(method, pattern, (NoParamRoute) () -> body));
+  }
+
+  private Payload get(String method, String uri) throws Exception {
+    Context context = mock(Context.class, RETURNS_DEEP_STUBS);
+    when(context.method()).thenReturn(method);
+    when(context.uri()).thenReturn(uri);
+
+    return new RouteIndex(sorter.getSortedRoutes()).get(uri, context);
+  }
+}
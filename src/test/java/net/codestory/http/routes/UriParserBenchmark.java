@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+// Run with the gc profiler: gc.alloc.rate.norm should be ~0 B/op for the misses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriParserBenchmark {
+  private final UriParser literal = new UriParser("/api/users/list");
+  private final UriParser withParams = new UriParser("/api/users/:id/orders/:order");
+  private final UriParser greedy = new UriParser("/files/:path:");
+
+  @Benchmark
+  public boolean miss_on_literal() {
+    return literal.matches("/api/users/lists");
+  }
+
+  @Benchmark
+  public boolean miss_on_length() {
+    return withParams.matches("/api/users/42/orders");
+  }
+
+  @Benchmark
+  public boolean miss_on_greedy() {
+    return greedy.matches("/folders/to/my/resource");
+  }
+
+  @Benchmark
+  public boolean hit_with_params() {
+    return withParams.matches("/api/users/42/orders/7?format=json");
+  }
+
+  @Benchmark
+  public String[] params() {
+    return withParams.params("/api/users/42/orders/7", null);
+  }
+
+  @Benchmark
+  public String[] greedy_params() {
+    return greedy.params("/files/to/my/resource", null);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(UriParserBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build()).run();
+  }
+}
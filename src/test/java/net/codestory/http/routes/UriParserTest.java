@@ -115,6 +115,7 @@ public class UriParserTest {
     assertThat(new UriParser("/end/:empty:").matches("/end")).isFalse();
     assertThat(new UriParser("/end/:empty:").matches("/end/")).isFalse();
     assertThat(new UriParser("/end/:empty:").params("/end/", null)).containsExactly("");
+    assertThat(new UriParser("/with/:param/in/:url:").matches("/with")).isFalse();
   }
 
   @Test
@@ -15,12 +15,18 @@
  */
 package net.codestory.http.routes;
 
+import net.codestory.http.io.ClassPaths;
+import net.codestory.http.io.InputStreams;
+import net.codestory.http.misc.Md5;
 import net.codestory.http.testhelpers.AbstractProdWebServerTest;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.SystemErrRule;
 import org.junit.contrib.java.lang.system.SystemOutRule;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class WebjarsTest extends AbstractProdWebServerTest {
@@ -40,6 +46,28 @@ public class WebjarsTest extends AbstractProdWebServerTest {
     get("/webjars/bootstrap/3.3.5/js/bootstrap.min.js").should().respond(200).haveType("application/javascript").contain("Bootstrap v3.3.5");
   }
 
+  @Test
+  public void immutable_webjars() throws IOException {
+    String uri = "/webjars/bootstrap/3.3.5/css/bootstrap.min.css";
+    String etag;
+    try (InputStream stream = ClassPaths.getResource("META-INF/resources" + uri).openStream()) {
+      etag = Md5.of(InputStreams.readBytes(stream));
+    }
+
+    get(uri).should().respond(200).haveHeader("Cache-Control", "public, max-age=31536000, immutable").haveHeader("ETag", etag);
+    get(uri).withHeader("If-None-Match", etag).should().respond(304);
+  }
+
+  @Test
+  public void webjar_ranges() {
+    String uri = "/webjars/bootstrap/3.3.5/css/bootstrap.min.css";
+
+    get(uri).should().respond(200).haveHeader("Accept-Ranges", "bytes");
+    get(uri).withHeader("Range", "bytes=7-22").should().respond(206).contain("Bootstrap v3.3.5").haveHeader("Content-Range", "bytes 7-22/122540");
+    get(uri).withHeader("Range", "bytes=99999999-").should().respond(416);
+    get(uri).withHeader("Range", "bytes=7-22").withHeader("If-Range", "\"outdated\"").should().respond(200);
+  }
+
   @Test
   public void unknown_webjars() {
     get("/webjars/missing").should().respond(404);
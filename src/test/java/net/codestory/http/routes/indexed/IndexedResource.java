@@ -0,0 +1,27 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.routes.indexed;
+
+import net.codestory.http.annotations.*;
+
+// Lives in a package that only test classes use, so that only their index covers it
+@Resource
+public class IndexedResource {
+  @Get("/indexed")
+  public String get() {
+    return "indexed";
+  }
+}
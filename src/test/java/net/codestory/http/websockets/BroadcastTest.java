@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2013-2015 all@code-story.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package net.codestory.http.websockets;
+
+import static java.util.stream.Collectors.toList;
+import static net.codestory.http.constants.FrameTypes.TEXT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class BroadcastTest {
+  List<Runnable> pendingTasks = new ArrayList<>();
+
+  @Test
+  public void encode_once_for_all_sessions() throws IOException {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    WebSocketSession first = mock(WebSocketSession.class);
+    WebSocketSession second = mock(WebSocketSession.class);
+    broadcast.subscribe("news", first);
+    broadcast.subscribe("news", second);
+
+    int count = broadcast.publish("news", new Message("Hello"));
+
+    ArgumentCaptor<byte[]> firstBytes = ArgumentCaptor.forClass(byte[].class);
+    ArgumentCaptor<byte[]> secondBytes = ArgumentCaptor.forClass(byte[].class);
+    verify(first).send(eq(TEXT), firstBytes.capture());
+    verify(second).send(eq(TEXT), secondBytes.capture());
+    assertThat(count).isEqualTo(2);
+    assertThat(new String(firstBytes.getValue())).isEqualTo("{\"text\":\"Hello\"}");
+    assertThat(secondBytes.getValue()).isSameAs(firstBytes.getValue());
+  }
+
+  @Test
+  public void publish_to_topic_subscribers_only() throws IOException {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    WebSocketSession session = mock(WebSocketSession.class);
+    broadcast.subscribe("news", session);
+
+    assertThat(broadcast.publish("other", "Hello")).isZero();
+    verify(session, never()).send(anyString(), any(byte[].class));
+  }
+
+  @Test
+  public void unsubscribe() throws IOException {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    WebSocketSession session = mock(WebSocketSession.class);
+    broadcast.subscribe("news", session);
+    broadcast.unsubscribe("news", session);
+
+    assertThat(broadcast.publish("news", "Hello")).isZero();
+    assertThat(broadcast.subscriberCount("news")).isZero();
+  }
+
+  @Test
+  public void evict_slow_sessions() throws IOException {
+    Broadcast broadcast = new Broadcast(2, pendingTasks::add);
+    WebSocketSession session = mock(WebSocketSession.class);
+    broadcast.subscribe("news", session);
+
+    broadcast.publish("news", "1");
+    broadcast.publish("news", "2");
+    broadcast.publish("news", "3");
+
+    verify(session).close();
+    assertThat(broadcast.subscriberCount("news")).isZero();
+  }
+
+  @Test
+  public void send_in_order() throws IOException {
+    Broadcast broadcast = new Broadcast(16, pendingTasks::add);
+    WebSocketSession session = mock(WebSocketSession.class);
+    broadcast.subscribe("news", session);
+
+    broadcast.publish("news", "1");
+    broadcast.publish("news", "2");
+    assertThat(pendingTasks).hasSize(1);
+    pendingTasks.forEach(Runnable::run);
+
+    ArgumentCaptor<byte[]> bytes = ArgumentCaptor.forClass(byte[].class);
+    verify(session, times(2)).send(eq(TEXT), bytes.capture());
+    assertThat(bytes.getAllValues().stream().map(String::new)).containsExactly("1", "2");
+  }
+
+  @Test
+  public void stream() {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    Stream<BroadcastFrame> stream = broadcast.stream("news");
+
+    broadcast.publish("news", "1");
+    broadcast.publish("news", "2");
+
+    assertThat(stream.limit(2).map(Frame::text).collect(toList())).containsExactly("1", "2");
+  }
+
+  @Test
+  public void end_stream_of_slow_subscribers() {
+    Broadcast broadcast = new Broadcast(2, Runnable::run);
+    Stream<BroadcastFrame> stream = broadcast.stream("news");
+
+    broadcast.publish("news", "1");
+    broadcast.publish("news", "2");
+    broadcast.publish("news", "3");
+
+    assertThat(stream.collect(toList())).isEmpty();
+    assertThat(broadcast.subscriberCount("news")).isZero();
+  }
+
+  @Test(timeout = 5000)
+  public void end_stream_closed_from_another_thread() throws InterruptedException {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    Stream<BroadcastFrame> stream = broadcast.stream("quiet");
+
+    Thread closer = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        // Ignore
+      }
+      stream.close();
+    });
+    closer.start();
+
+    assertThat(stream.iterator().hasNext()).isFalse();
+    closer.join();
+  }
+
+  @Test
+  public void unsubscribe_closed_streams() {
+    Broadcast broadcast = new Broadcast(16, Runnable::run);
+    Stream<BroadcastFrame> stream = broadcast.stream("news");
+    stream.close();
+
+    assertThat(broadcast.subscriberCount("news")).isZero();
+  }
+
+  static class Message {
+    final String text;
+
+    Message(String text) {
+      this.text = text;
+    }
+  }
+}